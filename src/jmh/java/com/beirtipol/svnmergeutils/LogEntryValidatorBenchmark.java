@@ -0,0 +1,108 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+
+/**
+ * The log entry validator chain of {@link MissingMergeWorker}, run over the eligible revisions of a previous check so
+ * that no server is involved.
+ * 
+ * @author beirtipol@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogEntryValidatorBenchmark {
+
+	@Param({ "100", "10000", "1000000" })
+	public int					revisions;
+
+	private MissingMergeWorker	worker;
+	private MissingMergeWorker	rulesWorker;
+	private MissingMergeState	state;
+
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setUp() throws SVNException {
+		SVNURL mergeSource = SVNURL.parseURIEncoded("file:///repo/branches/branch1");
+		SVNURL mergeTarget = SVNURL.parseURIEncoded("file:///repo/trunk");
+		long now = System.currentTimeMillis();
+		MissingMergeDictionary dictionary = new MissingMergeDictionary();
+		// The quiet time bounds the check by revision, so the last minute of revisions never reaches the state.
+		int endRevision = Math.max(revisions - 60, 0);
+		List<MissingMergeRecord> eligible = new ArrayList<>(endRevision);
+		for (int revision = 1; revision <= endRevision; revision++) {
+			String message = revision % 20 == 0 ? "[maven-release-plugin] prepare for next development iteration" : "Fixed issue " + revision;
+			Date date = new Date(now - (revisions - revision) * 1000L);
+			eligible.add(MissingMergeRecord.of(new SVNLogEntry(null, revision, "user" + (revision % 50), date, message), dictionary));
+		}
+		state = new MissingMergeState(mergeSource, mergeTarget, endRevision, "", RevisionRangeSet.EMPTY, eligible, true, -1, false);
+		worker = new MissingMergeWorker(mergeSource, mergeTarget, false, null, new IgnoreRegexMergeCheckerPredicate("^\\[maven-release-plugin\\].*", false));
+
+		// A typical set of ignore rules, of which only the release plugin message and the bot account ever match.
+		List<String> rules = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			rules.add("message:^\\[project-" + i + "\\] generated.*");
+			rules.add("author:bot" + i);
+		}
+		rules.add("message:^\\[maven-release-plugin\\].*");
+		rules.add("author:user49");
+		rules.add("revision:1-10");
+		rulesWorker = new MissingMergeWorker(mergeSource, mergeTarget, false, null, new IgnoreRulesMergeCheckerPredicate(rules, false));
+	}
+
+	@Benchmark
+	public void reportMissingMerges(Blackhole blackhole) throws SVNException {
+		worker.reportMissingMerges(state, blackhole::consume);
+	}
+
+	@Benchmark
+	public void reportMissingMergesWithIgnoreRules(Blackhole blackhole) throws SVNException {
+		rulesWorker.reportMissingMerges(state, blackhole::consume);
+	}
+}
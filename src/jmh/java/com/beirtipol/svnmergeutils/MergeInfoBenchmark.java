@@ -0,0 +1,135 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.wc.SVNPropertyData;
+
+/**
+ * Parsing, writing and joining of svn:mergeinfo values, over the number of merge sources in a value and the number of
+ * revision ranges recorded against each.
+ * 
+ * @author beirtipol@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeInfoBenchmark {
+	private static final String							MERGE_SOURCES_ROOT	= "/branches/";
+	private static final int							MODULES				= 10;
+
+	@Param({ "1", "10", "100" })
+	public int											branches;
+
+	@Param({ "1", "100", "10000" })
+	public int											ranges;
+
+	private SVNPropertyData								propertyData;
+	private SortedMap<String, RevisionRangeSet>			mergeInfo;
+	private List<SortedMap<String, RevisionRangeSet>>	subtreeMergeInfo;
+
+	@Setup
+	public void setUp() {
+		StringBuilder value = new StringBuilder();
+		for (int branch = 0; branch < branches; branch++) {
+			if (branch > 0) {
+				value.append('\n');
+			}
+			value.append(MERGE_SOURCES_ROOT).append("branch").append(branch).append(':');
+			appendRanges(value, 0);
+		}
+		propertyData = new SVNPropertyData(SVNUtils.SVN_MERGEINFO_PROP, SVNPropertyValue.create(value.toString()), null);
+		mergeInfo = SVNUtils.parseMergeInfo(value.toString());
+
+		// The same branches merged at module level, as the aggregator finds them below a project root.
+		subtreeMergeInfo = new ArrayList<>();
+		for (int module = 0; module < MODULES; module++) {
+			StringBuilder moduleValue = new StringBuilder();
+			for (int branch = 0; branch < branches; branch++) {
+				if (branch > 0) {
+					moduleValue.append('\n');
+				}
+				moduleValue.append(MERGE_SOURCES_ROOT).append("branch").append(branch).append("/module").append(module).append(':');
+				appendRanges(moduleValue, module);
+			}
+			subtreeMergeInfo.add(SVNUtils.parseMergeInfo(moduleValue.toString()));
+		}
+	}
+
+	/**
+	 * Ranges of five revisions with a gap of five between them, every tenth non-inheritable.
+	 */
+	private void appendRanges(StringBuilder value, int offset) {
+		for (int range = 0; range < ranges; range++) {
+			if (range > 0) {
+				value.append(',');
+			}
+			long start = range * 10L + offset + 1;
+			value.append(start).append('-').append(start + 4);
+			if (range % 10 == 9) {
+				value.append('*');
+			}
+		}
+	}
+
+	@Benchmark
+	public SortedMap<String, RevisionRangeSet> parseMergeInfoPropertyData() {
+		return SVNUtils.parseMergeInfoPropertyData(propertyData);
+	}
+
+	@Benchmark
+	public SVNPropertyValue createMergeInfoPropertyValue() {
+		return SVNUtils.createMergeInfoPropertyValue(mergeInfo);
+	}
+
+	@Benchmark
+	public SortedMap<String, RevisionRangeSet> joinMergeInfo() {
+		SortedMap<String, RevisionRangeSet> aggregated = new TreeMap<>();
+		for (SortedMap<String, RevisionRangeSet> subtree : subtreeMergeInfo) {
+			MergeInformationAggregator.joinMergeInfo(aggregated, subtree, MERGE_SOURCES_ROOT);
+		}
+		return aggregated;
+	}
+}
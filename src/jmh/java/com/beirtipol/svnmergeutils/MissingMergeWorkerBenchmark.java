@@ -0,0 +1,156 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+import org.tmatesoft.svn.core.wc.SVNClientManager;
+
+/**
+ * {@link MissingMergeWorker#getMissingMerges(org.tmatesoft.svn.core.ISVNLogEntryHandler)} end to end, against a
+ * generated local file:// repository with a single branch. Every other branch revision has been merged to trunk.
+ * 
+ * @author beirtipol@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MissingMergeWorkerBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int					revisions;
+
+	private File				repositoryDir;
+	private MissingMergeWorker	worker;
+
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setUp() throws SVNException, IOException {
+		FSRepositoryFactory.setup();
+		repositoryDir = Files.createTempDirectory("svnmergeutils-benchmark").toFile();
+		SVNURL repositoryURL = SVNRepositoryFactory.createLocalRepository(repositoryDir, true, true);
+		SVNRepository repository = SVNRepositoryFactory.create(repositoryURL);
+		try {
+			ISVNEditor editor = repository.getCommitEditor("Adding base structure", null);
+			editor.openRoot(-1);
+			editor.addDir("trunk", null, -1);
+			addFile(editor, "trunk/file.txt", "0");
+			editor.closeDir();
+			editor.addDir("branches", null, -1);
+			editor.closeDir();
+			editor.closeDir();
+			editor.closeEdit();
+
+			long baseRevision = repository.getLatestRevision();
+			editor = repository.getCommitEditor("Creating a branch", null);
+			editor.openRoot(-1);
+			editor.addDir("branches/branch1", "/trunk", baseRevision);
+			editor.closeDir();
+			editor.closeDir();
+			editor.closeEdit();
+
+			RevisionRangeSet.Builder merged = new RevisionRangeSet.Builder();
+			for (int i = 1; i <= revisions; i++) {
+				editor = repository.getCommitEditor("Change " + i + " on branch1", null);
+				editor.openRoot(-1);
+				editor.openDir("branches", -1);
+				editor.openDir("branches/branch1", -1);
+				editor.openFile("branches/branch1/file.txt", -1);
+				sendContents(editor, "branches/branch1/file.txt", Integer.toString(i));
+				editor.closeDir();
+				editor.closeDir();
+				editor.closeDir();
+				long revision = editor.closeEdit().getNewRevision();
+				if (i % 2 == 0) {
+					merged.add(revision, revision, false);
+				}
+			}
+
+			TreeMap<String, RevisionRangeSet> mergeInfo = new TreeMap<>();
+			mergeInfo.put("/branches/branch1", merged.build());
+			editor = repository.getCommitEditor("Recording merges from branch1", null);
+			editor.openRoot(-1);
+			editor.openDir("trunk", -1);
+			editor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNUtils.createMergeInfoPropertyValue(mergeInfo));
+			editor.closeDir();
+			editor.closeDir();
+			editor.closeEdit();
+		} finally {
+			repository.closeSession();
+		}
+
+		worker = new MissingMergeWorker(repositoryURL.appendPath("branches/branch1", false), repositoryURL.appendPath("trunk", false), false, SVNClientManager.newInstance());
+	}
+
+	private static void addFile(ISVNEditor editor, String path, String contents) throws SVNException {
+		editor.addFile(path, null, -1);
+		sendContents(editor, path, contents);
+	}
+
+	private static void sendContents(ISVNEditor editor, String path, String contents) throws SVNException {
+		editor.applyTextDelta(path, null);
+		String checksum = new SVNDeltaGenerator().sendDelta(path, new ByteArrayInputStream(contents.getBytes()), editor, true);
+		editor.closeFile(path, checksum);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(repositoryDir);
+	}
+
+	@Benchmark
+	public void getMissingMerges(Blackhole blackhole) throws SVNException {
+		worker.getMissingMerges(blackhole::consume);
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.args4j.Option;
+import org.tmatesoft.svn.core.SVNLogEntry;
+
+/**
+ * A worker whose missing merges may be filtered by ignore rules given on the command line.
+ * 
+ * @author beirtipol@gmail.com
+ *
+ */
+public abstract class AbstractIgnoreRulesWorker extends AbstractWorker {
+
+	@Option(name = "--ignoreRegex", usage = "Regular expression. If the svn log entry comment matches this regex, it will not be reported.")
+	private String			ignoreRegex;
+
+	@Option(name = "--ignoreRule", usage = "Rule for log entries which should not be reported, as 'author:NAME', 'revision:RANGES' (e.g. 100-200,305), 'message:REGEX' or 'path:REGEX'. A path rule ignores entries which only change matching paths. May be given any number of times.")
+	protected List<String>	ignoreRules	= new ArrayList<>();
+
+	@Option(name = "--ignoreRulesFile", usage = "File of ignore rules, one per line, as for 'ignoreRule'. Blank lines and lines starting with '#' are skipped.")
+	private File			ignoreRulesFile;
+
+	/**
+	 * Gather the 'ignoreRegex' and the rules of the 'ignoreRulesFile' into 'ignoreRules', and check that they are all
+	 * valid.
+	 */
+	@Override
+	protected boolean handleArgs(String[] args) {
+		if (!super.handleArgs(args)) {
+			return false;
+		}
+
+		try {
+			if (StringUtils.isNotBlank(ignoreRegex)) {
+				ignoreRules.add("message:" + ignoreRegex);
+			}
+			if (ignoreRulesFile != null) {
+				ignoreRules.addAll(IgnoreRulesMergeCheckerPredicate.readRules(ignoreRulesFile));
+			}
+			createIgnoreRules(ignoreRules);
+		} catch (IOException e) {
+			getLogger().error("Could not read the ignore rules file", e);
+			return false;
+		} catch (IllegalArgumentException e) {
+			getLogger().error(e.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 
+	 * @return a predicate applying all the given ignore rules, with its own match counts, or null if there are none.
+	 */
+	protected IgnoreRulesMergeCheckerPredicate createIgnoreRules(List<String> rules) {
+		return rules.isEmpty() ? null : new IgnoreRulesMergeCheckerPredicate(rules, verbose);
+	}
+
+	/**
+	 * 
+	 * @return the log entry validators for a {@link MissingMergeWorker} applying the given ignore rules, if any.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected static Predicate<SVNLogEntry>[] getLogEntryValidators(IgnoreRulesMergeCheckerPredicate ignoreRulesPredicate) {
+		return ignoreRulesPredicate == null ? new Predicate[0] : new Predicate[] { ignoreRulesPredicate };
+	}
+}
@@ -27,7 +27,10 @@ import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import org.kohsuke.args4j.ParserProperties;
+import org.kohsuke.args4j.spi.ExplicitBooleanOptionHandler;
 import org.slf4j.Logger;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
 
 /**
  * 
@@ -42,6 +45,15 @@ public abstract class AbstractWorker {
 	@Option(name = "-h", usage = "Print help", help = true)
 	protected boolean	printHelp	= false;
 
+	@Option(name = "--sessionKeepAlive", handler = ExplicitBooleanOptionHandler.class, usage = "Whether SVN sessions keep their connection open between requests.")
+	protected boolean	sessionKeepAlive		= true;
+
+	@Option(name = "--maxIdleSessionsPerHost", usage = "Maximum number of idle SVN sessions to keep open to any single server.")
+	protected int		maxIdleSessionsPerHost	= 4;
+
+	@Option(name = "--sessionIdleTimeout", usage = "Number of seconds an SVN session may be idle before it is closed.")
+	protected int		sessionIdleTimeout		= 60;
+
 	protected abstract Logger getLogger();
 
 	protected boolean handleArgs(String[] args) {
@@ -58,9 +70,21 @@ public abstract class AbstractWorker {
 			printUsage(parser);
 			return false;
 		}
+		if (maxIdleSessionsPerHost < 0 || sessionIdleTimeout < 0) {
+			getLogger().error("'maxIdleSessionsPerHost' and 'sessionIdleTimeout' must not be negative.");
+			return false;
+		}
 		return true;
 	}
 
+	/**
+	 * 
+	 * @return a session pool, configured from the command line, to be shared by every SVN client of this worker.
+	 */
+	protected SVNSessionPool createSessionPool(ISVNAuthenticationManager authenticationManager) {
+		return new SVNSessionPool(authenticationManager, SVNWCUtil.createDefaultOptions(true), sessionKeepAlive, maxIdleSessionsPerHost, sessionIdleTimeout * 1000L);
+	}
+
 	private void printUsage(CmdLineParser parser) {
 		getLogger().info("java " + getClass().getName() + " [options...] arguments...");
 		parser.printUsage(System.out);
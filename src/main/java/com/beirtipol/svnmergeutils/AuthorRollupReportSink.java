@@ -0,0 +1,125 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+
+/**
+ * Passes the report through to another sink while rolling the missing merges up by author as they arrive, so that the
+ * people with changes to merge can be listed without reading the report back. Only a count, the oldest commit date and
+ * the affected pairs are kept for each author, however many of their revisions are missing.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class AuthorRollupReportSink implements ReportSink {
+
+	/**
+	 * Author of log entries without one.
+	 */
+	public static final String			NO_AUTHOR	= "(no author)";
+
+	private final ReportSink			delegate;
+	private final List<String>			pairNames	= new ArrayList<>();
+	private final Map<String, Author>	authors		= new HashMap<>();
+
+	public AuthorRollupReportSink(ReportSink delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public ISVNLogEntryHandler openPair(String mergeSourcePath, String mergeTargetPath) throws SVNException {
+		int pairIndex = pairNames.size();
+		pairNames.add(mergeSourcePath + " -> " + mergeTargetPath);
+		ISVNLogEntryHandler handler = delegate.openPair(mergeSourcePath, mergeTargetPath);
+		return logEntry -> {
+			String name = logEntry.getAuthor() == null ? NO_AUTHOR : logEntry.getAuthor();
+			authors.computeIfAbsent(name, Author::new).add(logEntry.getDate(), pairIndex);
+			handler.handleLogEntry(logEntry);
+		};
+	}
+
+	@Override
+	public boolean finish() throws SVNException, IOException {
+		return delegate.finish();
+	}
+
+	/**
+	 * Write one tab-separated line per author: the author, the number of missing revisions, the date of the oldest of
+	 * them and the affected merge source/target pairs. Authors with the most missing revisions come first.
+	 */
+	public void writeAuthors(Writer out) throws IOException {
+		List<Author> sorted = new ArrayList<>(authors.values());
+		sorted.sort(Comparator.comparingLong((Author author) -> -author.missingRevisions).thenComparing(author -> author.name));
+		for (Author author : sorted) {
+			out.write(author.name + "\t" + author.missingRevisions + "\t" + (author.oldestDate == null ? "" : SVNDate.formatDate(author.oldestDate)) + "\t");
+			String separator = "";
+			for (int pairIndex = author.pairs.nextSetBit(0); pairIndex >= 0; pairIndex = author.pairs.nextSetBit(pairIndex + 1)) {
+				out.write(separator + pairNames.get(pairIndex));
+				separator = "; ";
+			}
+			out.write("\n");
+		}
+		out.flush();
+	}
+
+	/**
+	 * 
+	 * @return the number of authors with at least one missing merge.
+	 */
+	public int getAuthorCount() {
+		return authors.size();
+	}
+
+	private static class Author {
+		private final String	name;
+		private final BitSet	pairs	= new BitSet();
+		private long			missingRevisions;
+		private Date			oldestDate;
+
+		private Author(String name) {
+			this.name = name;
+		}
+
+		private void add(Date date, int pairIndex) {
+			missingRevisions++;
+			if (date != null && (oldestDate == null || date.before(oldestDate))) {
+				oldestDate = date;
+			}
+			pairs.set(pairIndex);
+		}
+	}
+}
@@ -51,6 +51,10 @@ public class BranchAwareXMLLogHandler extends SVNXMLLogHandler {
 		numberOfRevisions++;
 		addAttribute("mergeSource", mergeSourcePath);
 		addAttribute("mergeTarget", mergeTargetPath);
+		if (arg0 instanceof TruncatedLogEntry) {
+			addAttribute("changedPathsTruncated", "true");
+			addAttribute("changedPathCount", Integer.toString(((TruncatedLogEntry) arg0).getChangedPathCount()));
+		}
 		super.handleLogEntry(arg0);
 	}
 
@@ -0,0 +1,254 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.io.SVNLocationSegment;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+/**
+ * Works out which revisions of a merge source are eligible to be merged into a merge target without asking the server
+ * to do so. The target's mergeinfo catalog and history, and the source's history and log, are fetched once each and
+ * shared between every pair checked with the same instance, so that e.g. many targets of a single source only fetch
+ * its log once.
+ *
+ * A source revision is eligible if it changed a path within the source, other than by creating the source itself, which
+ * has not been merged into the corresponding part of the target. A change counts as merged if it is part of the
+ * target's own history, or if it is recorded in the mergeinfo of the nearest node of the target at or above the changed
+ * path. Non-inheritable mergeinfo only covers the node which carries it.
+ *
+ * A single instance may be used by any number of threads at once, and is meant to last for one run.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class ClientSideEligibility {
+
+	private final Map<String, Object>	cache		= new ConcurrentHashMap<>();
+	private final Map<String, Object>	locks		= new ConcurrentHashMap<>();
+	private final AtomicLong			fetches		= new AtomicLong();
+	private final AtomicLong			cacheHits	= new AtomicLong();
+	private final AtomicLong			mismatches	= new AtomicLong();
+
+	private interface Fetch<T> {
+		T fetch() throws SVNException;
+	}
+
+	/**
+	 * Pass each eligible revision of the source to the handler, oldest first.
+	 *
+	 * @param repository
+	 *            any session to the repository holding both paths
+	 * @param sourcePath
+	 *            repository path of the merge source, with a leading slash
+	 * @param targetPath
+	 *            repository path of the merge target, with a leading slash
+	 * @param pegRevision
+	 *            revision of both the merge source and target
+	 * @param startRevision
+	 *            lowest source revision to consider, or -1 for the full history of the source
+	 * @param endRevision
+	 *            highest source revision to consider, or -1 for the peg revision
+	 * @param revisionProperties
+	 *            the revision properties to fetch for each log entry, or null for all of them
+	 * @param handler
+	 * @throws SVNException
+	 */
+	public void getEligible(SVNRepository repository, String sourcePath, String targetPath, long pegRevision, long startRevision, long endRevision, String[] revisionProperties, ISVNLogEntryHandler handler) throws SVNException {
+		String root = repository.getRepositoryRoot(true).toString();
+		long lowRevision = Math.max(startRevision, 0);
+		long highRevision = endRevision >= 0 ? Math.min(endRevision, pegRevision) : pegRevision;
+		if (lowRevision > highRevision) {
+			return;
+		}
+
+		SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog = get(root + "|catalog|" + targetPath + "@" + pegRevision, () -> SVNUtils.getMergeInfoCatalog(repository, targetPath, pegRevision));
+		List<SVNLocationSegment> targetHistory = get(root + "|history|" + targetPath + "@" + pegRevision, () -> getLocationSegments(repository, targetPath, pegRevision));
+		List<SVNLocationSegment> sourceHistory = get(root + "|history|" + sourcePath + "@" + pegRevision, () -> getLocationSegments(repository, sourcePath, pegRevision));
+		String logKey = root + "|log|" + sourcePath + "@" + pegRevision + ":" + lowRevision + "-" + highRevision + "|" + (revisionProperties == null ? "*" : Arrays.toString(revisionProperties));
+		List<SVNLogEntry> sourceLog = get(logKey, () -> getLog(repository, sourcePath, lowRevision, highRevision, revisionProperties));
+
+		for (SVNLogEntry logEntry : sourceLog) {
+			String sourcePathAtRevision = getPathAt(sourceHistory, logEntry.getRevision());
+			if (sourcePathAtRevision != null && !isMerged(logEntry, sourcePathAtRevision, targetPath, catalog, targetHistory)) {
+				handler.handleLogEntry(logEntry);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return whether every change made within the source by the given revision has been merged into the target.
+	 */
+	private static boolean isMerged(SVNLogEntry logEntry, String sourcePathAtRevision, String targetPath, SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog, List<SVNLocationSegment> targetHistory) {
+		long revision = logEntry.getRevision();
+		for (SVNLogEntryPath changedPath : logEntry.getChangedPaths().values()) {
+			String path = changedPath.getPath();
+			String relativePath;
+			if (path.equals(sourcePathAtRevision)) {
+				if (changedPath.getCopyPath() != null || changedPath.getType() == SVNLogEntryPath.TYPE_ADDED) {
+					// The creation of the source itself is never eligible.
+					continue;
+				}
+				relativePath = "";
+			} else if (path.startsWith(sourcePathAtRevision + "/")) {
+				relativePath = path.substring(sourcePathAtRevision.length());
+			} else {
+				continue;
+			}
+			if (sourcePathAtRevision.equals(getPathAt(targetHistory, revision))) {
+				continue;
+			}
+			String nodeRelativePath = getNearestNode(catalog, targetPath, relativePath);
+			if (nodeRelativePath == null) {
+				return false;
+			}
+			RevisionRangeSet merged = catalog.get(targetPath + nodeRelativePath).get(sourcePathAtRevision + nodeRelativePath);
+			if (merged == null || !merged.contains(revision)) {
+				return false;
+			}
+			if (!nodeRelativePath.equals(relativePath) && merged.isNonInheritable(revision)) {
+				return false;
+			}
+		}
+		// Including a revision which changed nothing within the source but the creation of the source itself.
+		return true;
+	}
+
+	/**
+	 *
+	 * @return the path, relative to the target, of the deepest node of the target which carries mergeinfo and is at or
+	 *         above the given relative path, or null if there is none.
+	 */
+	private static String getNearestNode(SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog, String targetPath, String relativePath) {
+		String nodeRelativePath = relativePath;
+		while (true) {
+			if (catalog.containsKey(targetPath + nodeRelativePath)) {
+				return nodeRelativePath;
+			}
+			if (nodeRelativePath.isEmpty()) {
+				return null;
+			}
+			nodeRelativePath = nodeRelativePath.substring(0, nodeRelativePath.lastIndexOf('/'));
+		}
+	}
+
+	private static String getPathAt(List<SVNLocationSegment> history, long revision) {
+		for (SVNLocationSegment segment : history) {
+			if (segment.getStartRevision() <= revision && revision <= segment.getEndRevision()) {
+				String path = segment.getPath();
+				return path == null ? null : path.startsWith("/") ? path : "/" + path;
+			}
+		}
+		return null;
+	}
+
+	private static List<SVNLocationSegment> getLocationSegments(SVNRepository repository, String path, long pegRevision) throws SVNException {
+		if (repository.checkPath(path, pegRevision) == SVNNodeKind.NONE) {
+			return Collections.emptyList();
+		}
+		return new ArrayList<>(repository.getLocationSegments(path, pegRevision, pegRevision, 0));
+	}
+
+	private static List<SVNLogEntry> getLog(SVNRepository repository, String path, long lowRevision, long highRevision, String[] revisionProperties) throws SVNException {
+		List<SVNLogEntry> log = new ArrayList<>();
+		if (repository.checkPath(path, highRevision) == SVNNodeKind.NONE) {
+			return log;
+		}
+		repository.log(new String[] { path }, lowRevision, highRevision, true, false, 0, false, revisionProperties, log::add);
+		return log;
+	}
+
+	/**
+	 *
+	 * @return the cached value for the key, fetching it if this is the first time it has been asked for. Concurrent
+	 *         requests for the same key wait for the first to fetch it.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T get(String key, Fetch<T> fetch) throws SVNException {
+		Object value = cache.get(key);
+		if (value == null) {
+			synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+				value = cache.get(key);
+				if (value == null) {
+					value = fetch.fetch();
+					cache.put(key, value);
+					fetches.incrementAndGet();
+					return (T) value;
+				}
+			}
+		}
+		cacheHits.incrementAndGet();
+		return (T) value;
+	}
+
+	/**
+	 * Record that the revisions found eligible here differed from those found by the server.
+	 */
+	public void recordMismatch() {
+		mismatches.incrementAndGet();
+	}
+
+	/**
+	 *
+	 * @return the number of pairs for which the revisions found eligible here differed from those found by the server.
+	 */
+	public long getMismatchCount() {
+		return mismatches.get();
+	}
+
+	/**
+	 *
+	 * @return the number of catalogs, histories and logs fetched from the server.
+	 */
+	public long getFetchCount() {
+		return fetches.get();
+	}
+
+	/**
+	 *
+	 * @return the number of times a catalog, history or log was reused rather than fetched.
+	 */
+	public long getCacheHitCount() {
+		return cacheHits.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s fetched, %s reused", getFetchCount(), getCacheHitCount());
+	}
+}
@@ -0,0 +1,410 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNLogEntry;
+
+/**
+ * Leaves out any log entry which matches one of a number of ignore rules. Each rule is written as 'kind:value':
+ * <ul>
+ * <li>author:NAME - the entry was committed by the given user</li>
+ * <li>revision:RANGES - the entry's revision is in the given comma separated revisions or ranges, e.g. 100-200,305</li>
+ * <li>message:REGEX - the whole commit message matches the regular expression</li>
+ * <li>path:REGEX - every path changed by the entry matches the regular expression. Needs the changed paths of each
+ * entry to have been fetched.</li>
+ * </ul>
+ *
+ * Rules are compiled once. Author and revision rules become a single set lookup each. All message rules are combined
+ * into one pattern, and all path rules into another, so that an entry is matched against each kind of rule in a single
+ * pass however many rules there are. Rules whose patterns use backreferences or named groups, which would break once
+ * combined, are matched with patterns of their own after the combined one.
+ *
+ * The kinds of rule are tried cheapest first, and every {@value #REORDER_INTERVAL} entries they are re-ordered by their
+ * cost for each entry they have ignored, so that the most selective cheap rules short-circuit the rest. The number of
+ * entries ignored by each rule is available from {@link #getMatchCounts()}.
+ *
+ * May be used by any number of threads at once.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class IgnoreRulesMergeCheckerPredicate implements Predicate<SVNLogEntry> {
+	private static final Logger	LOGGER				= LoggerFactory.getLogger(IgnoreRulesMergeCheckerPredicate.class);
+	private static final int	REORDER_INTERVAL	= 1024;
+
+	private final Map<String, LongAdder>	matchCounts	= new LinkedHashMap<>();
+	private final AtomicLong				tested		= new AtomicLong();
+	private final Stage[]					allStages;
+	private volatile Stage[]				stages;
+	private boolean							verbose;
+
+	/**
+	 *
+	 * @param rules
+	 *            in the form 'kind:value'
+	 * @param verbose
+	 * @throws IllegalArgumentException
+	 *             if a rule cannot be parsed
+	 */
+	public IgnoreRulesMergeCheckerPredicate(List<String> rules, boolean verbose) {
+		this.verbose = verbose;
+		Map<String, String> authors = new HashMap<>();
+		List<String> revisionRules = new ArrayList<>();
+		List<String> messageRules = new ArrayList<>();
+		List<String> pathRules = new ArrayList<>();
+		for (String rule : rules) {
+			int separator = rule.indexOf(':');
+			if (separator < 0) {
+				throw new IllegalArgumentException(String.format("Ignore rule '%s' must be in the form 'kind:value'", rule));
+			}
+			String kind = rule.substring(0, separator).trim();
+			String value = rule.substring(separator + 1);
+			switch (kind) {
+			case "author":
+				String existing = authors.putIfAbsent(value.trim(), rule);
+				if (existing != null && !existing.equals(rule)) {
+					throw new IllegalArgumentException(String.format("Ignore rule '%s' names the same author as '%s'", rule, existing));
+				}
+				break;
+			case "revision":
+				revisionRules.add(rule);
+				break;
+			case "message":
+				messageRules.add(rule);
+				break;
+			case "path":
+				pathRules.add(rule);
+				break;
+			default:
+				throw new IllegalArgumentException(String.format("Ignore rule '%s' must be of kind author, revision, message or path", rule));
+			}
+			matchCounts.putIfAbsent(rule, new LongAdder());
+		}
+
+		List<Stage> stageList = new ArrayList<>();
+		if (!revisionRules.isEmpty()) {
+			stageList.add(new RevisionStage(revisionRules));
+		}
+		if (!authors.isEmpty()) {
+			stageList.add(new AuthorStage(authors));
+		}
+		if (!messageRules.isEmpty()) {
+			stageList.add(new MessageStage(messageRules));
+		}
+		if (!pathRules.isEmpty()) {
+			stageList.add(new PathStage(pathRules));
+		}
+		allStages = stageList.toArray(new Stage[0]);
+		stages = allStages;
+	}
+
+	/**
+	 * Read ignore rules from a file, one per line. Blank lines and lines starting with '#' are skipped.
+	 */
+	public static List<String> readRules(File file) throws IOException {
+		List<String> rules = new ArrayList<>();
+		for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+			if (!line.trim().isEmpty() && !line.trim().startsWith("#")) {
+				rules.add(line);
+			}
+		}
+		return rules;
+	}
+
+	@Override
+	public boolean test(SVNLogEntry entry) {
+		if (tested.incrementAndGet() % REORDER_INTERVAL == 0) {
+			reorderStages();
+		}
+		for (Stage stage : stages) {
+			stage.evaluated.increment();
+			String rule = stage.match(entry);
+			if (rule != null) {
+				stage.matched.increment();
+				matchCounts.get(rule).increment();
+				if (verbose) {
+					LOGGER.info(String.format("Skipping Log Entry for revision %s as it matches ignore rule '%s'", entry.getRevision(), rule));
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return the number of entries ignored by each rule, in the order the rules were given.
+	 */
+	public Map<String, Long> getMatchCounts() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (Map.Entry<String, LongAdder> entry : matchCounts.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().sum());
+		}
+		return result;
+	}
+
+	/**
+	 * Try first the stages which cost the least for each entry they ignore.
+	 */
+	private void reorderStages() {
+		Stage[] reordered = allStages.clone();
+		Arrays.sort(reordered, Comparator.comparingDouble(Stage::getCostPerMatch));
+		stages = reordered;
+	}
+
+	private static String getValue(String rule) {
+		return rule.substring(rule.indexOf(':') + 1);
+	}
+
+	private static RevisionRangeSet parseRevisions(String rule) {
+		RevisionRangeSet.Builder builder = new RevisionRangeSet.Builder();
+		try {
+			for (String range : getValue(rule).split(",")) {
+				String[] bounds = range.trim().split("-");
+				long start = Long.parseLong(bounds[0].trim());
+				long end = bounds.length > 1 ? Long.parseLong(bounds[1].trim()) : start;
+				builder.add(start, end, false);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Ignore rule '%s' must list revisions such as 100-200,305", rule), e);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * All the rules of one kind.
+	 */
+	private abstract static class Stage {
+		private final LongAdder	evaluated	= new LongAdder();
+		private final LongAdder	matched		= new LongAdder();
+		private final double	cost;
+
+		/**
+		 *
+		 * @param cost
+		 *            the relative cost of matching an entry against this stage
+		 */
+		private Stage(double cost) {
+			this.cost = cost;
+		}
+
+		/**
+		 *
+		 * @return the rule the entry matches, or null if it matches none.
+		 */
+		abstract String match(SVNLogEntry entry);
+
+		private double getCostPerMatch() {
+			double matchRate = (matched.sum() + 1.0) / (evaluated.sum() + 1.0);
+			return cost / matchRate;
+		}
+	}
+
+	private static class RevisionStage extends Stage {
+		private final List<String>			rules;
+		private final RevisionRangeSet[]	ruleRevisions;
+		private final RevisionRangeSet		revisions;
+
+		private RevisionStage(List<String> rules) {
+			super(1);
+			this.rules = rules;
+			this.ruleRevisions = new RevisionRangeSet[rules.size()];
+			RevisionRangeSet.Builder allRevisions = new RevisionRangeSet.Builder();
+			for (int i = 0; i < rules.size(); i++) {
+				ruleRevisions[i] = parseRevisions(rules.get(i));
+				allRevisions.add(ruleRevisions[i]);
+			}
+			this.revisions = allRevisions.build();
+		}
+
+		@Override
+		String match(SVNLogEntry entry) {
+			if (!revisions.contains(entry.getRevision())) {
+				return null;
+			}
+			for (int i = 0; i < ruleRevisions.length; i++) {
+				if (ruleRevisions[i].contains(entry.getRevision())) {
+					return rules.get(i);
+				}
+			}
+			return null;
+		}
+	}
+
+	private static class AuthorStage extends Stage {
+		private final Map<String, String> authorRules;
+
+		private AuthorStage(Map<String, String> authorRules) {
+			super(1);
+			this.authorRules = authorRules;
+		}
+
+		@Override
+		String match(SVNLogEntry entry) {
+			return entry.getAuthor() == null ? null : authorRules.get(entry.getAuthor());
+		}
+	}
+
+	/**
+	 * Matches against a single pattern made of every rule's pattern as an alternative, and works out which rule matched
+	 * from which alternative's group took part in the match. A rule whose pattern refers to its own groups, by number or
+	 * by name, cannot be combined as its groups would be renumbered or clash, so is kept as a pattern of its own.
+	 */
+	private static class CombinedPattern {
+		private final Pattern		pattern;
+		private final List<String>	rules				= new ArrayList<>();
+		private final List<Integer>	ruleGroups			= new ArrayList<>();
+		private final List<String>	separateRules		= new ArrayList<>();
+		private final List<Pattern>	separatePatterns	= new ArrayList<>();
+
+		private CombinedPattern(List<String> allRules) {
+			StringBuilder combined = new StringBuilder();
+			int group = 1;
+			for (String rule : allRules) {
+				String regex = getValue(rule);
+				// Compiled alone first, both to report a bad pattern against its rule and to count its own groups.
+				Pattern rulePattern = Pattern.compile(regex);
+				if (refersToGroups(regex)) {
+					separateRules.add(rule);
+					separatePatterns.add(rulePattern);
+					continue;
+				}
+				combined.append(rules.isEmpty() ? "" : "|").append('(').append(regex).append(')');
+				rules.add(rule);
+				ruleGroups.add(group);
+				group += 1 + rulePattern.matcher("").groupCount();
+			}
+			pattern = rules.isEmpty() ? null : Pattern.compile(combined.toString());
+		}
+
+		/**
+		 *
+		 * @return whether the regex contains a backreference or a named group, outside of any quoted or escaped text.
+		 */
+		private static boolean refersToGroups(String regex) {
+			for (int i = 0; i < regex.length(); i++) {
+				char c = regex.charAt(i);
+				if (c == '\\' && i + 1 < regex.length()) {
+					char next = regex.charAt(++i);
+					if (next == 'Q') {
+						int end = regex.indexOf("\\E", i);
+						if (end < 0) {
+							return false;
+						}
+						i = end + 1;
+					} else if (next == 'k' || (next >= '1' && next <= '9')) {
+						return true;
+					}
+				} else if (c == '(' && regex.startsWith("?<", i + 1) && i + 3 < regex.length() && Character.isLetter(regex.charAt(i + 3))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private String match(String value) {
+			if (pattern != null) {
+				Matcher matcher = pattern.matcher(value);
+				if (matcher.matches()) {
+					for (int i = 0; i < ruleGroups.size(); i++) {
+						if (matcher.start(ruleGroups.get(i)) >= 0) {
+							return rules.get(i);
+						}
+					}
+				}
+			}
+			for (int i = 0; i < separatePatterns.size(); i++) {
+				if (separatePatterns.get(i).matcher(value).matches()) {
+					return separateRules.get(i);
+				}
+			}
+			return null;
+		}
+	}
+
+	private static class MessageStage extends Stage {
+		private final CombinedPattern pattern;
+
+		private MessageStage(List<String> rules) {
+			super(10);
+			this.pattern = new CombinedPattern(rules);
+		}
+
+		@Override
+		String match(SVNLogEntry entry) {
+			return entry.getMessage() == null ? null : pattern.match(entry.getMessage());
+		}
+	}
+
+	private static class PathStage extends Stage {
+		private final CombinedPattern pattern;
+
+		private PathStage(List<String> rules) {
+			super(20);
+			this.pattern = new CombinedPattern(rules);
+		}
+
+		/**
+		 * An entry is only ignored if every path it changed is matched, so changes which also touch other paths are
+		 * still reported. The rule credited is the one which matched the first path. Entries holding only some of their
+		 * changed paths are never ignored, as the paths left out may not match.
+		 */
+		@Override
+		String match(SVNLogEntry entry) {
+			if (entry.getChangedPaths() == null || entry instanceof TruncatedLogEntry) {
+				return null;
+			}
+			String firstRule = null;
+			for (String path : entry.getChangedPaths().keySet()) {
+				String rule = pattern.match(path);
+				if (rule == null) {
+					return null;
+				}
+				if (firstRule == null) {
+					firstRule = rule;
+				}
+			}
+			return firstRule;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNRevisionProperty;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+
+/**
+ * Writes the report as JSON Lines: one json object per missing merge, each on its own line and each carrying the
+ * merge source and target of its pair, so that the report can be read a line at a time without parsing all of it. The
+ * fields follow the names used in svn log xml.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class JSONLinesReportSink implements ReportSink {
+
+	private final Writer	out;
+	private long			entriesWritten;
+
+	public JSONLinesReportSink(Writer out) {
+		this.out = out;
+	}
+
+	@Override
+	public ISVNLogEntryHandler openPair(String mergeSourcePath, String mergeTargetPath) {
+		String pairFields = "{\"mergeSource\": " + JSONUtils.toJSONString(mergeSourcePath) + ", \"mergeTarget\": " + JSONUtils.toJSONString(mergeTargetPath) + ", ";
+		return logEntry -> {
+			try {
+				out.write(pairFields);
+				writeLogEntry(out, logEntry);
+				out.write("}\n");
+			} catch (IOException e) {
+				SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Could not write missing merge r{0}", logEntry.getRevision());
+				throw new SVNException(err, e);
+			}
+			entriesWritten++;
+		};
+	}
+
+	/**
+	 * Write the fields of a log entry, separated by commas but without the surrounding braces, so that they can be
+	 * written into a json object along with other fields.
+	 */
+	static void writeLogEntry(Writer out, SVNLogEntry logEntry) throws IOException {
+		out.write("\"revision\": " + logEntry.getRevision());
+		SVNProperties revisionProperties = logEntry.getRevisionProperties();
+		Map<String, String> otherProperties = new TreeMap<>();
+		for (String name : revisionProperties.nameSet()) {
+			String value = revisionProperties.getStringValue(name);
+			if (value == null) {
+				continue;
+			}
+			if (SVNRevisionProperty.AUTHOR.equals(name)) {
+				out.write(", \"author\": " + JSONUtils.toJSONString(value));
+			} else if (SVNRevisionProperty.DATE.equals(name)) {
+				out.write(", \"date\": " + JSONUtils.toJSONString(SVNDate.formatDate(logEntry.getDate())));
+			} else if (SVNRevisionProperty.LOG.equals(name)) {
+				out.write(", \"msg\": " + JSONUtils.toJSONString(value));
+			} else {
+				otherProperties.put(name, value);
+			}
+		}
+		if (!otherProperties.isEmpty()) {
+			String separator = "";
+			out.write(", \"revprops\": {");
+			for (Map.Entry<String, String> property : otherProperties.entrySet()) {
+				out.write(separator + JSONUtils.toJSONString(property.getKey()) + ": " + JSONUtils.toJSONString(property.getValue()));
+				separator = ", ";
+			}
+			out.write("}");
+		}
+		if (logEntry.getChangedPaths() != null && !logEntry.getChangedPaths().isEmpty()) {
+			String separator = "";
+			out.write(", \"paths\": [");
+			for (SVNLogEntryPath path : new TreeMap<>(logEntry.getChangedPaths()).values()) {
+				out.write(separator + "{\"path\": " + JSONUtils.toJSONString(path.getPath()) + ", \"action\": \"" + path.getType() + "\"");
+				if (path.getKind() != null && path.getKind() != SVNNodeKind.UNKNOWN) {
+					out.write(", \"kind\": \"" + path.getKind() + "\"");
+				}
+				if (path.getCopyPath() != null) {
+					out.write(", \"copyfromPath\": " + JSONUtils.toJSONString(path.getCopyPath()) + ", \"copyfromRev\": " + path.getCopyRevision());
+				}
+				out.write("}");
+				separator = ", ";
+			}
+			out.write("]");
+		}
+		if (logEntry instanceof TruncatedLogEntry) {
+			out.write(", \"changedPathsTruncated\": true, \"changedPathCount\": " + ((TruncatedLogEntry) logEntry).getChangedPathCount());
+		}
+	}
+
+	@Override
+	public boolean finish() throws IOException {
+		out.flush();
+		return entriesWritten > 0;
+	}
+}
@@ -23,33 +23,29 @@
  */
 package com.beirtipol.svnmergeutils;
 
-import java.util.function.Predicate;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.tmatesoft.svn.core.SVNLogEntry;
-
 /**
+ * Helpers for the hand-written JSON of the reports and metrics.
  * 
  * @author beirtipol@gmail.com
  *
  */
-public class QuietTimeMergeCheckerPredicate implements Predicate<SVNLogEntry> {
-	private static final Logger	LOGGER	= LoggerFactory.getLogger(QuietTimeMergeCheckerPredicate.class);
-	private final long			quietTimeInMillis;
-	private boolean				verbose;
-
-	public QuietTimeMergeCheckerPredicate(long quietTimeInMillis, boolean verbose) {
-		this.quietTimeInMillis = quietTimeInMillis;
-		this.verbose = verbose;
-	}
+public class JSONUtils {
 
-	@Override
-	public boolean test(SVNLogEntry entry) {
-		boolean result = System.currentTimeMillis() - entry.getDate().getTime() > quietTimeInMillis;
-		if (!result && verbose) {
-			LOGGER.info(String.format("Skipping Log Entry for revision %s as it has been committed within the quiet time window of %sms", entry.getRevision(), quietTimeInMillis));
+	/**
+	 * 
+	 * @return the given value as a quoted JSON string, with quotes, backslashes and control characters escaped.
+	 */
+	public static String toJSONString(String value) {
+		StringBuilder result = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				result.append('\\').append(c);
+			} else if (c < 0x20) {
+				result.append(String.format("\\u%04x", (int) c));
+			} else {
+				result.append(c);
+			}
 		}
-		return result;
+		return result.append('"').toString();
 	}
-}
\ No newline at end of file
+}
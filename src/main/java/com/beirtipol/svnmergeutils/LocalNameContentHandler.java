@@ -0,0 +1,68 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * SVNKit's xml handlers only fill in the qualified names of the elements and attributes they write. Namespace-aware
+ * consumers, such as an xslt {@link javax.xml.transform.sax.TransformerHandler}, also need the local names, so this
+ * copies the qualified name into any missing local name before passing the event on.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class LocalNameContentHandler extends XMLFilterImpl {
+
+	public LocalNameContentHandler(ContentHandler contentHandler) {
+		setContentHandler(contentHandler);
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+		AttributesImpl namedAtts = new AttributesImpl(atts);
+		for (int i = 0; i < namedAtts.getLength(); i++) {
+			if (isEmpty(namedAtts.getLocalName(i))) {
+				namedAtts.setLocalName(i, namedAtts.getQName(i));
+			}
+			if (namedAtts.getURI(i) == null) {
+				namedAtts.setURI(i, "");
+			}
+		}
+		super.startElement(uri == null ? "" : uri, isEmpty(localName) ? qName : localName, qName, namedAtts);
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		super.endElement(uri == null ? "" : uri, isEmpty(localName) ? qName : localName, qName);
+	}
+
+	private static boolean isEmpty(String name) {
+		return name == null || name.isEmpty();
+	}
+}
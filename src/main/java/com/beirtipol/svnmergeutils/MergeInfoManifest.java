@@ -0,0 +1,92 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What {@link MergeInformationAggregator} found in a working copy, kept between runs so that the next run only has to
+ * read the merge information of the nodes which may have changed since.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class MergeInfoManifest implements Serializable {
+	private static final long	serialVersionUID	= 1L;
+
+	private final String		workingCopyRoot;
+	private final long			revision;
+	private final List<String>	nodesWithMergeInfo;
+
+	public MergeInfoManifest(File workingCopyRoot, long revision, List<String> nodesWithMergeInfo) {
+		this.workingCopyRoot = workingCopyRoot.getAbsolutePath();
+		this.revision = revision;
+		this.nodesWithMergeInfo = new ArrayList<>(nodesWithMergeInfo);
+	}
+
+	/**
+	 *
+	 * @return true if this manifest was recorded for the given working copy root.
+	 */
+	public boolean isFor(File workingCopyRoot) {
+		return this.workingCopyRoot.equals(workingCopyRoot.getAbsolutePath());
+	}
+
+	/**
+	 *
+	 * @return the lowest working revision of any node in the working copy when the manifest was recorded. Any node
+	 *         changed in the repository after this revision, and since updated, has a later committed revision.
+	 */
+	public long getRevision() {
+		return revision;
+	}
+
+	/**
+	 *
+	 * @return the paths, relative to the working copy root, of the nodes below it which carried merge information.
+	 */
+	public List<String> getNodesWithMergeInfo() {
+		return Collections.unmodifiableList(nodesWithMergeInfo);
+	}
+
+	/**
+	 *
+	 * @return the manifest held in the file, or null if there is none or it cannot be read.
+	 */
+	public static MergeInfoManifest load(File manifestFile) {
+		return SerializedFiles.load(manifestFile, MergeInfoManifest.class, "manifest");
+	}
+
+	/**
+	 * Write this manifest to the file, replacing it in one step.
+	 */
+	public void save(File manifestFile) throws IOException {
+		SerializedFiles.save(manifestFile, this);
+	}
+}
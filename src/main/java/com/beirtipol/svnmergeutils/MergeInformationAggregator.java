@@ -24,20 +24,54 @@
 package com.beirtipol.svnmergeutils;
 
 import java.io.File;
-import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeSet;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.kohsuke.args4j.Option;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNCommitInfo;
 import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNMergeInfoInheritance;
+import org.tmatesoft.svn.core.SVNNodeKind;
 import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.wc.ISVNPropertyHandler;
 import org.tmatesoft.svn.core.wc.SVNClientManager;
+import org.tmatesoft.svn.core.wc.SVNInfo;
+import org.tmatesoft.svn.core.wc.SVNPropertyData;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
 import org.tmatesoft.svn.core.wc.SVNWCClient;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnSetProperty;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
 
 /**
  * When using SVN merge and recording merge information, it is suggested to always record merge information at the
@@ -55,13 +89,31 @@ public class MergeInformationAggregator extends AbstractWorker {
 
 	public static final String	SVN_MERGEINFO_PROP	= "svn:mergeinfo";
 
-	@Option(name = "--workingCopyRoot", usage = "Path to aggregate merge information to.", required = true)
+	@Option(name = "--workingCopyRoot", usage = "Path to aggregate merge information to. Either this or 'repositoryUrl' must be given.")
 	private File				workingCopyRoot;
 
+	@Option(name = "--repositoryUrl", usage = "Repository url to aggregate merge information to, without a working copy. All of the changes are made in a single commit. Either this or 'workingCopyRoot' must be given.")
+	private String				repositoryUrl;
+
+	@Option(name = "--commitMessage", usage = "Commit message used when aggregating merge information in the repository.")
+	private String				commitMessage		= "Aggregated merge information";
+
 	@Option(name = "--mergeSourcesRoot", usage = "Root folder of merge source directories, relative to the repository root. Should include leading and trailing slashes. e.g. '/myproject/branches/'", required = true)
 	private String				mergeSourcesRoot;
 
-	private SVNClientManager	clientManager;
+	@Option(name = "--threads", usage = "Number of threads with which to read the merge information of the working copy. Defaults to the number of processors.")
+	private int					threads				= Runtime.getRuntime().availableProcessors();
+
+	@Option(name = "--recursiveScan", usage = "Find the merge information of the working copy with a single recursive read of its working properties, and remove it from only the nodes which carry it. The number of working copy operations then depends on the number of nodes with merge information rather than on the size of the tree.")
+	private boolean				recursiveScan;
+
+	@Option(name = "--manifestFile", usage = "File in which to keep the working copy revision, and the nodes which carried merge information, between runs. When it holds the result of a previous run on the same working copy, only the root, the nodes listed in it and the nodes modified or updated since are read. Otherwise the whole working copy is read, as with 'recursiveScan'.")
+	private File				manifestFile;
+
+	private SVNClientManager					clientManager;
+	private SVNSessionPool						sessionPool;
+	private final List<SVNClientManager>		threadClientManagers	= new CopyOnWriteArrayList<>();
+	private ThreadLocal<SVNClientManager>		threadClientManager;
 
 	public static void main(String[] args) throws SVNException {
 		new MergeInformationAggregator().doMain(args);
@@ -69,42 +121,99 @@ public class MergeInformationAggregator extends AbstractWorker {
 
 	public MergeInformationAggregator() throws SVNException {
 		// noargs constructor for command line execution
-		clientManager = SVNClientManager.newInstance();
 	}
 
-	private void walkFileTree(File path, SortedMap<String, Set<Long>> mergedRevisions) throws SVNException {
-		File[] files = path.listFiles(new FileFilter() {
-			@Override
-			public boolean accept(File pathname) {
-				return !pathname.getName().equals(".svn");
+	/**
+	 * Reads the merge information of a directory and, in parallel, of every directory below it. Each task builds its own
+	 * map from its own directory and the results of its subtasks, so no map is ever shared between threads.
+	 */
+	private class MergeInfoWalkTask extends RecursiveTask<SortedMap<String, RevisionRangeSet>> {
+		private static final long	serialVersionUID	= 1L;
+		private final Path			directory;
+
+		private MergeInfoWalkTask(Path directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		protected SortedMap<String, RevisionRangeSet> compute() {
+			SortedMap<String, RevisionRangeSet> mergedRevisions = new TreeMap<>();
+			try {
+				joinMergeInfo(mergedRevisions, SVNUtils.parseMergeInfoPropertyData(SVNUtils.getMergeInformation(threadClientManager.get(), directory.toFile())));
+			} catch (SVNException e) {
+				throw new WalkException(e);
 			}
-		});
-		if (files == null) {
-			return;
+			for (MergeInfoWalkTask subtask : invokeAll(getSubdirectoryTasks(directory))) {
+				joinMergeInfo(mergedRevisions, subtask.join());
+			}
+			return mergedRevisions;
 		}
-		for (File file : files) {
-			SortedMap<String, Set<Long>> fileMergedRevisions = SVNUtils.parseMergeInfoPropertyData(SVNUtils.getMergeInformation(clientManager, file));
-			joinMergeInfo(mergedRevisions, fileMergedRevisions);
-			SVNWCClient wcClient = clientManager.getWCClient();
-			wcClient.doSetProperty(file, SVN_MERGEINFO_PROP, null, true, SVNDepth.EMPTY, null, null);
-			walkFileTree(file, mergedRevisions);
+	}
+
+	/**
+	 * Carries an {@link SVNException} out of a {@link MergeInfoWalkTask}.
+	 */
+	private static class WalkException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private WalkException(SVNException cause) {
+			super(cause);
 		}
 	}
 
-	private void joinMergeInfo(SortedMap<String, Set<Long>> to, SortedMap<String, Set<Long>> from) {
-		for (Entry<String, Set<Long>> entry : from.entrySet()) {
+	/**
+	 * 
+	 * @return a walk task for each directory directly inside the given directory. Only directories can hold
+	 *         merge information.
+	 */
+	private List<MergeInfoWalkTask> getSubdirectoryTasks(Path directory) {
+		List<MergeInfoWalkTask> subtasks = new ArrayList<>();
+		try (DirectoryStream<Path> children = Files.newDirectoryStream(directory, path -> !path.getFileName().toString().equals(".svn") && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))) {
+			for (Path child : children) {
+				subtasks.add(new MergeInfoWalkTask(child));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return subtasks;
+	}
+
+	/**
+	 * Removes the merge information from everything below the working copy root. This is done from a single thread once
+	 * the walk has finished, as a working copy can only be written to under its lock, with one recursive property change
+	 * per child of the root rather than one per node.
+	 */
+	private void removeMergeInfoBelowRoot() throws SVNException {
+		SVNWCClient wcClient = clientManager.getWCClient();
+		try (DirectoryStream<Path> children = Files.newDirectoryStream(workingCopyRoot.toPath(), path -> !path.getFileName().toString().equals(".svn"))) {
+			for (Path child : children) {
+				wcClient.doSetProperty(child.toFile(), SVN_MERGEINFO_PROP, null, true, SVNDepth.INFINITY, null, null);
+			}
+		} catch (IOException e) {
+			SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Unable to list the children of {0}", workingCopyRoot);
+			throw new SVNException(err, e);
+		}
+	}
+
+	private void joinMergeInfo(SortedMap<String, RevisionRangeSet> to, SortedMap<String, RevisionRangeSet> from) {
+		joinMergeInfo(to, from, mergeSourcesRoot);
+	}
+
+	/**
+	 * Add the merged revisions in 'from' to those in 'to'. Any merge source below the merge sources root is recorded
+	 * against the branch directly below the root, e.g. '/branches/rel/module' against '/branches/rel'.
+	 */
+	static void joinMergeInfo(SortedMap<String, RevisionRangeSet> to, SortedMap<String, RevisionRangeSet> from, String mergeSourcesRoot) {
+		for (Entry<String, RevisionRangeSet> entry : from.entrySet()) {
 			String branch = entry.getKey();
 			if (branch.startsWith(mergeSourcesRoot)) {
-				String branchName = branch.replaceFirst(mergeSourcesRoot, "").split("/")[0];
-				branch = mergeSourcesRoot + branchName;
+				int branchNameEnd = branch.indexOf('/', mergeSourcesRoot.length());
+				if (branchNameEnd >= 0) {
+					branch = branch.substring(0, branchNameEnd);
+				}
 			}
 
-			Set<Long> revisions = to.get(branch);
-			if (revisions == null) {
-				revisions = new TreeSet<>();
-				to.put(branch, revisions);
-			}
-			revisions.addAll(entry.getValue());
+			to.merge(branch, entry.getValue(), RevisionRangeSet::union);
 		}
 	}
 
@@ -112,12 +221,345 @@ public class MergeInformationAggregator extends AbstractWorker {
 		if (!handleArgs(args)) {
 			return;
 		}
-		SortedMap<String, Set<Long>> rootMergeInfo = SVNUtils.parseMergeInfoPropertyData(SVNUtils.getMergeInformation(clientManager, workingCopyRoot));
-		walkFileTree(workingCopyRoot, rootMergeInfo);
-		SVNPropertyValue propValue = SVNUtils.createMergeInfoPropertyValue(rootMergeInfo);
+		if ((workingCopyRoot == null) == (repositoryUrl == null)) {
+			LOGGER.error("Exactly one of 'workingCopyRoot' and 'repositoryUrl' must be given.");
+			return;
+		}
+		if (threads < 1) {
+			LOGGER.error("'threads' must be at least 1.");
+			return;
+		}
+		if (manifestFile != null && workingCopyRoot == null) {
+			LOGGER.error("'manifestFile' can only be used with 'workingCopyRoot'.");
+			return;
+		}
+		sessionPool = createSessionPool(SVNWCUtil.createDefaultAuthenticationManager());
+		clientManager = SVNClientManager.newInstance(SVNWCUtil.createDefaultOptions(true), sessionPool);
+		threadClientManager = ThreadLocal.withInitial(() -> {
+			SVNClientManager threadManager = SVNClientManager.newInstance(SVNWCUtil.createDefaultOptions(true), sessionPool);
+			threadClientManagers.add(threadManager);
+			return threadManager;
+		});
+		try {
+			if (repositoryUrl != null) {
+				aggregateInRepository();
+			} else if (manifestFile != null) {
+				aggregateIncrementally();
+			} else if (recursiveScan) {
+				aggregateFromScan();
+			} else {
+				aggregate();
+			}
+		} finally {
+			clientManager.dispose();
+			if (verbose) {
+				LOGGER.info("SVN session pool: {}", sessionPool);
+			}
+		}
+	}
+
+	private void aggregate() throws SVNException {
+		SortedMap<String, RevisionRangeSet> rootMergeInfo = SVNUtils.parseMergeInfoPropertyData(SVNUtils.getMergeInformation(clientManager, workingCopyRoot));
+		ForkJoinPool forkJoinPool = new ForkJoinPool(threads);
+		try {
+			List<MergeInfoWalkTask> subtasks = getSubdirectoryTasks(workingCopyRoot.toPath());
+			for (MergeInfoWalkTask subtask : subtasks) {
+				forkJoinPool.execute(subtask);
+			}
+			for (MergeInfoWalkTask subtask : subtasks) {
+				joinMergeInfo(rootMergeInfo, subtask.join());
+			}
+		} catch (RuntimeException e) {
+			// The fork/join framework may rewrap an exception thrown by a task, so look for the underlying cause.
+			for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+				if (cause instanceof SVNException) {
+					throw (SVNException) cause;
+				}
+				if (cause instanceof IOException) {
+					SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Unable to walk {0}", workingCopyRoot);
+					throw new SVNException(err, cause);
+				}
+			}
+			throw e;
+		} finally {
+			forkJoinPool.shutdownNow();
+			for (SVNClientManager threadManager : threadClientManagers) {
+				threadManager.dispose();
+			}
+		}
+		SVNPropertyValue propValue = createRootMergeInfoPropertyValue(workingCopyRoot, rootMergeInfo);
+		removeMergeInfoBelowRoot();
 		clientManager.getWCClient().doSetProperty(workingCopyRoot, SVN_MERGEINFO_PROP, propValue, true, SVNDepth.EMPTY, null, null);
 	}
 
+	/**
+	 * Aggregates in two phases. First a single recursive read of the working copy's own properties finds the nodes which
+	 * carry merge information. Then a single batch of property changes, sharing one open working copy context, removes it
+	 * from just those nodes and sets the aggregated value on the root.
+	 */
+	private void aggregateFromScan() throws SVNException {
+		File root = workingCopyRoot.getAbsoluteFile();
+		writeAggregatedMergeInfo(root, scanMergeInfo(root));
+	}
+
+	/**
+	 * Aggregates using the manifest of the previous run, if there is one for this working copy. A single status walk of
+	 * the working copy finds the nodes which have been modified, added or updated since the manifest was recorded. Only
+	 * those, the root and the nodes listed in the manifest can carry merge information, since every other node carried
+	 * none at the previous run and has not changed since, so only their merge information is read. Without a usable
+	 * manifest the whole working copy is read, as with a recursive scan. Either way the manifest is then replaced.
+	 */
+	private void aggregateIncrementally() throws SVNException {
+		File root = workingCopyRoot.getAbsoluteFile();
+		MergeInfoManifest previous = MergeInfoManifest.load(manifestFile);
+		if (previous != null && !previous.isFor(root)) {
+			previous = null;
+		}
+		long changedSince = previous == null ? Long.MAX_VALUE : previous.getRevision();
+		long[] lowestRevision = { Long.MAX_VALUE };
+		Set<File> candidates = new LinkedHashSet<>();
+		candidates.add(root);
+		clientManager.getStatusClient().doStatus(root, SVNRevision.WORKING, SVNDepth.INFINITY, false, true, false, false, status -> {
+			SVNStatusType nodeStatus = status.getNodeStatus();
+			if (nodeStatus == SVNStatusType.STATUS_UNVERSIONED || nodeStatus == SVNStatusType.STATUS_IGNORED || nodeStatus == SVNStatusType.STATUS_DELETED || nodeStatus == SVNStatusType.STATUS_MISSING) {
+				return;
+			}
+			if (status.getRevision() != null && status.getRevision().getNumber() >= 0) {
+				lowestRevision[0] = Math.min(lowestRevision[0], status.getRevision().getNumber());
+			}
+			SVNStatusType propertiesStatus = status.getPropertiesStatus();
+			boolean modified = propertiesStatus == SVNStatusType.STATUS_MODIFIED || propertiesStatus == SVNStatusType.STATUS_CONFLICTED || nodeStatus == SVNStatusType.STATUS_ADDED || nodeStatus == SVNStatusType.STATUS_REPLACED;
+			boolean updated = status.getCommittedRevision() != null && status.getCommittedRevision().getNumber() > changedSince;
+			if (modified || updated) {
+				candidates.add(status.getFile().getAbsoluteFile());
+			}
+		}, null);
+
+		Map<File, SortedMap<String, RevisionRangeSet>> nodeMergeInfo;
+		if (previous == null) {
+			nodeMergeInfo = scanMergeInfo(root);
+		} else {
+			for (String node : previous.getNodesWithMergeInfo()) {
+				candidates.add(new File(root, node).getAbsoluteFile());
+			}
+			nodeMergeInfo = new LinkedHashMap<>();
+			SVNWCClient wcClient = clientManager.getWCClient();
+			for (File candidate : candidates) {
+				if (!candidate.exists()) {
+					continue;
+				}
+				SVNPropertyData property = wcClient.doGetProperty(candidate, SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING);
+				if (property != null && property.getValue() != null) {
+					nodeMergeInfo.put(candidate, SVNUtils.parseMergeInfoPropertyData(property));
+				}
+			}
+			if (verbose) {
+				LOGGER.info("Read the merge information of {} nodes changed since r{} or listed in {}", candidates.size(), changedSince, manifestFile);
+			}
+		}
+
+		List<String> nodesWithMergeInfo = writeAggregatedMergeInfo(root, nodeMergeInfo);
+		long revision = lowestRevision[0] == Long.MAX_VALUE ? 0 : lowestRevision[0];
+		try {
+			new MergeInfoManifest(root, revision, nodesWithMergeInfo).save(manifestFile);
+		} catch (IOException e) {
+			SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Unable to write manifest {0}", manifestFile);
+			throw new SVNException(err, e);
+		}
+	}
+
+	/**
+	 * Find the nodes of the working copy which carry merge information with a single recursive read of its working
+	 * properties.
+	 * 
+	 * @return the merge information of each node which has any, including the root.
+	 */
+	private Map<File, SortedMap<String, RevisionRangeSet>> scanMergeInfo(File root) throws SVNException {
+		Map<File, SortedMap<String, RevisionRangeSet>> nodeMergeInfo = new LinkedHashMap<>();
+		clientManager.getWCClient().doGetProperty(root, SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING, SVNDepth.INFINITY, new ISVNPropertyHandler() {
+			@Override
+			public void handleProperty(File path, SVNPropertyData property) throws SVNException {
+				nodeMergeInfo.put(path.getAbsoluteFile(), SVNUtils.parseMergeInfoPropertyData(property));
+			}
+
+			@Override
+			public void handleProperty(SVNURL url, SVNPropertyData property) throws SVNException {
+			}
+
+			@Override
+			public void handleProperty(long revision, SVNPropertyData property) throws SVNException {
+			}
+		}, null);
+		return nodeMergeInfo;
+	}
+
+	/**
+	 * Remove the merge information from every node below the root which carries any, and set the aggregated value on
+	 * the root, in a single batch of property changes.
+	 * 
+	 * @return the paths, relative to the root, of the nodes the merge information was removed from.
+	 */
+	private List<String> writeAggregatedMergeInfo(File root, Map<File, SortedMap<String, RevisionRangeSet>> nodeMergeInfo) throws SVNException {
+		SortedMap<String, RevisionRangeSet> rootMergeInfo = new TreeMap<>();
+		SortedMap<String, RevisionRangeSet> descendantMergeInfo = new TreeMap<>();
+		List<File> nodesWithMergeInfo = new ArrayList<>();
+		for (Entry<File, SortedMap<String, RevisionRangeSet>> node : nodeMergeInfo.entrySet()) {
+			if (node.getKey().equals(root)) {
+				rootMergeInfo.putAll(node.getValue());
+			} else {
+				joinMergeInfo(descendantMergeInfo, node.getValue());
+				nodesWithMergeInfo.add(node.getKey());
+			}
+		}
+
+		joinMergeInfo(rootMergeInfo, descendantMergeInfo);
+		if (verbose) {
+			LOGGER.info("Found merge information on {} nodes below {}", nodesWithMergeInfo.size(), root);
+		}
+
+		SVNPropertyValue rootPropertyValue = createRootMergeInfoPropertyValue(root, rootMergeInfo);
+		// A single operation factory which keeps its working copy context open between operations, so that the working
+		// copy database is opened once for the whole write phase rather than once per node.
+		SvnOperationFactory operationFactory = new SvnOperationFactory();
+		operationFactory.setAutoCloseContext(false);
+		try {
+			for (File node : nodesWithMergeInfo) {
+				setMergeInfo(operationFactory, node, null);
+			}
+			setMergeInfo(operationFactory, root, rootPropertyValue);
+		} finally {
+			operationFactory.dispose();
+		}
+
+		List<String> relativePaths = new ArrayList<>();
+		for (File node : nodesWithMergeInfo) {
+			relativePaths.add(root.toPath().relativize(node.toPath()).toString());
+		}
+		return relativePaths;
+	}
+
+	private static void setMergeInfo(SvnOperationFactory operationFactory, File node, SVNPropertyValue mergeInfo) throws SVNException {
+		SvnSetProperty setProperty = operationFactory.createSetProperty();
+		setProperty.setSingleTarget(SvnTarget.fromFile(node));
+		setProperty.setPropertyName(SVN_MERGEINFO_PROP);
+		setProperty.setPropertyValue(mergeInfo);
+		setProperty.setDepth(SVNDepth.EMPTY);
+		setProperty.setForce(true);
+		setProperty.run();
+	}
+
+	/**
+	 * Aggregates the merge information below a repository url without a working copy. The merge information of every
+	 * node below the url is fetched in a single request, and its removal from those nodes is committed together with the
+	 * aggregated value on the root. Only property changes are sent, never file contents.
+	 */
+	private void aggregateInRepository() throws SVNException {
+		SVNURL url = SVNURL.parseURIEncoded(repositoryUrl);
+		SVNRepository repository = clientManager.createRepository(url, true);
+		long headRevision = repository.getLatestRevision();
+		String rootPath = SVNUtils.getRepositoryPath(repository, url);
+		SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog = SVNUtils.getMergeInfoCatalog(repository, rootPath, headRevision, SVNMergeInfoInheritance.EXPLICIT);
+
+		SortedMap<String, RevisionRangeSet> rootMergeInfo = new TreeMap<>();
+		SortedMap<String, RevisionRangeSet> descendantMergeInfo = new TreeMap<>();
+		List<String> nodesWithMergeInfo = new ArrayList<>();
+		for (Entry<String, SortedMap<String, RevisionRangeSet>> node : catalog.entrySet()) {
+			if (node.getKey().equals(rootPath)) {
+				rootMergeInfo.putAll(node.getValue());
+			} else {
+				joinMergeInfo(descendantMergeInfo, node.getValue());
+				nodesWithMergeInfo.add(node.getKey().substring(rootPath.length()).replaceFirst("^/", ""));
+			}
+		}
+		if (nodesWithMergeInfo.isEmpty()) {
+			LOGGER.info("No merge information to aggregate below {}", url);
+			return;
+		}
+		joinMergeInfo(rootMergeInfo, descendantMergeInfo);
+
+		// Parents must be opened before their children and each directory only once, so order by path segment.
+		nodesWithMergeInfo.sort(Comparator.comparing(path -> path.replace('/', '\0')));
+		Map<String, SVNNodeKind> nodeKinds = new HashMap<>();
+		for (String node : nodesWithMergeInfo) {
+			nodeKinds.put(node, repository.checkPath(node, headRevision));
+		}
+
+		SVNPropertyValue rootPropertyValue = createRootMergeInfoPropertyValue(repository, rootPath, headRevision, rootMergeInfo);
+		ISVNEditor editor = repository.getCommitEditor(commitMessage, null);
+		try {
+			editor.openRoot(headRevision);
+			editor.changeDirProperty(SVN_MERGEINFO_PROP, rootPropertyValue);
+			Deque<String> openDirectories = new ArrayDeque<>();
+			openDirectories.push("");
+			for (String node : nodesWithMergeInfo) {
+				while (!isAncestor(openDirectories.peek(), node)) {
+					editor.closeDir();
+					openDirectories.pop();
+				}
+				String parent = node.substring(0, Math.max(node.lastIndexOf('/'), 0));
+				while (!openDirectories.peek().equals(parent)) {
+					String current = openDirectories.peek();
+					int slash = parent.indexOf('/', current.isEmpty() ? 0 : current.length() + 1);
+					String next = slash < 0 ? parent : parent.substring(0, slash);
+					editor.openDir(next, headRevision);
+					openDirectories.push(next);
+				}
+				if (nodeKinds.get(node) == SVNNodeKind.DIR) {
+					editor.openDir(node, headRevision);
+					editor.changeDirProperty(SVN_MERGEINFO_PROP, null);
+					openDirectories.push(node);
+				} else {
+					editor.openFile(node, headRevision);
+					editor.changeFileProperty(node, SVN_MERGEINFO_PROP, null);
+					editor.closeFile(node, null);
+				}
+			}
+			while (!openDirectories.isEmpty()) {
+				editor.closeDir();
+				openDirectories.pop();
+			}
+			SVNCommitInfo commitInfo = editor.closeEdit();
+			LOGGER.info("Aggregated merge information from {} nodes to {} in r{}", nodesWithMergeInfo.size(), url, commitInfo.getNewRevision());
+		} catch (SVNException e) {
+			editor.abortEdit();
+			throw e;
+		}
+	}
+
+	/**
+	 * 
+	 * @return the value to set on the working copy root for the aggregated merge information, or null to remove it if
+	 *         the root would inherit the same from its parent anyway.
+	 */
+	private SVNPropertyValue createRootMergeInfoPropertyValue(File root, SortedMap<String, RevisionRangeSet> rootMergeInfo) throws SVNException {
+		SVNInfo info = clientManager.getWCClient().doInfo(root, SVNRevision.WORKING);
+		SVNRepository repository = clientManager.createRepository(info.getURL(), true);
+		try {
+			return createRootMergeInfoPropertyValue(repository, SVNUtils.getRepositoryPath(repository, info.getURL()), info.getRevision().getNumber(), rootMergeInfo);
+		} finally {
+			repository.closeSession();
+		}
+	}
+
+	/**
+	 * 
+	 * @return the value to set on the root for the aggregated merge information, normalized, or null to remove it if the
+	 *         root would inherit the same from its parent anyway.
+	 */
+	private SVNPropertyValue createRootMergeInfoPropertyValue(SVNRepository repository, String rootPath, long revision, SortedMap<String, RevisionRangeSet> rootMergeInfo) throws SVNException {
+		if (SVNUtils.isImpliedByInheritance(rootMergeInfo, SVNUtils.getInheritedMergeInfo(repository, rootPath, revision))) {
+			if (verbose) {
+				LOGGER.info("The aggregated merge information of {} is inherited from its parent, so is removed", rootPath);
+			}
+			return null;
+		}
+		return SVNUtils.createMergeInfoPropertyValue(rootMergeInfo);
+	}
+
+	private static boolean isAncestor(String directory, String path) {
+		return directory.isEmpty() || path.startsWith(directory + "/");
+	}
+
 	@Override
 	protected Logger getLogger() {
 		return LOGGER;
@@ -23,46 +23,105 @@
  */
 package com.beirtipol.svnmergeutils;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
 
-import javax.xml.transform.Result;
 import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.args4j.Option;
+import org.kohsuke.args4j.spi.ExplicitBooleanOptionHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.ISVNDirEntryHandler;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNNodeKind;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.auth.BasicAuthenticationManager;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.wc.SVNClientManager;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
 import org.tmatesoft.svn.core.wc.xml.SVNXMLSerializer;
-import org.xml.sax.SAXException;
+import org.xml.sax.ContentHandler;
+
+import com.beirtipol.svnmergeutils.MissingMergeMetrics.PairMetrics;
 
 /**
  * 
  * @author beirtipol@gmail.com
  *
  */
-public class MissingMergeChecker extends AbstractWorker {
+public class MissingMergeChecker extends AbstractIgnoreRulesWorker {
+
+	/**
+	 * Where the revisions eligible to be merged are worked out.
+	 */
+	public enum Eligibility {
+		/** By the server, with a log-eligible request for each pair. */
+		SERVER,
+		/** Locally, from mergeinfo and logs fetched once per run and shared between pairs. */
+		CLIENT,
+		/** Both ways, reporting the server's result and logging any difference. */
+		VERIFY
+	}
+
+	/**
+	 * The format the report is written in.
+	 */
+	public enum ReportFormat {
+		/** svn log xml, with the merge source and target as attributes of each log entry. */
+		XML,
+		/** One json object per line, each with its merge source and target. */
+		JSONL
+	}
+
 	private static final Logger	LOGGER		= LoggerFactory.getLogger(MissingMergeChecker.class);
 
+	private static SAXTransformerFactory	transformerFactory;
+	private static Templates				htmlTemplates;
+
 	@Option(name = "--user", usage = "SVN Username")
 	protected String			user;
 
@@ -72,21 +131,27 @@ public class MissingMergeChecker extends AbstractWorker {
 	@Option(name = "--baseUrl", usage = "Common base url of 'from' and 'to'", required = true)
 	protected String			baseUrl;
 
-	@Option(name = "--mergeSources", usage = "Semicolon-delimited list of merge source paths, relative to the baseUrl. This must have the same number of paths as 'toPaths'", required = true)
+	@Option(name = "--mergeSources", usage = "Semicolon-delimited list of merge source paths, relative to the baseUrl. This must have the same number of paths as 'toPaths'")
 	protected String			mergeSources;
 	protected String[]			mergeSourceArray;
 
+	@Option(name = "--discoverMergeSources", usage = "Path, relative to the baseUrl, of a directory such as 'branches' whose subdirectories are all used as merge sources, instead of listing them in 'mergeSources'. The directory is listed at startup, and again on each pass in 'watch' mode, and 'mergeTargets' must then be a single path which is used as the target of every discovered source.")
+	protected String			discoverMergeSources;
+
 	@Option(name = "--mergeTargets", usage = "Semicolon-delimited list of merge target paths, relative to the baseUrl. This must have the same number of paths as 'fromPaths'", required = true)
 	protected String			mergeTargets;
 	protected String[]			mergeTargetArray;
 
-	@Option(name = "--ignoreRegex", usage = "Regular expression. If the svn log entry comment matches this regex, it will not be reported.")
-	private String				ignoreRegex;
-
-	@Option(name = "--outputFile", usage = "File to write missing merge revision information. Written as xml.", required = true)
+	@Option(name = "--outputFile", usage = "File to write missing merge revision information. Written as xml, unless 'outputFormat' says otherwise.", required = true)
 	private File				outputFile;
 
-	@Option(name = "--usersOutputFile", usage = "File to write list of users who are present in the missing merge report. If not specified, will write to standard out")
+	@Option(name = "--outputFormat", usage = "Format of the output file. XML writes svn log xml. JSONL writes one json object per missing merge, one per line, which can be read as it is written.")
+	private ReportFormat		outputFormat	= ReportFormat.XML;
+
+	@Option(name = "--gzipOutput", usage = "Compress the output file with gzip, in either format. The html report is not compressed.")
+	private boolean				gzipOutput;
+
+	@Option(name = "--usersOutputFile", usage = "File to write list of users who are present in the missing merge report. If not specified, will write to standard out. Each line holds a user, their number of missing merges, the date of the oldest and the merge source/target pairs they are missing from, separated by tabs.")
 	private File				usersOutputFile;
 
 	@Option(name = "--outputAsHTML", usage = "Transform the output file xml to human-readable HTML.")
@@ -95,6 +160,41 @@ public class MissingMergeChecker extends AbstractWorker {
 	@Option(name = "--quietTime", usage = "Number of seconds prior to execution to ignore commits. This allows people time to merge their changes, and will help prevent unnecessary noise.")
 	private Integer				quietTime	= 0;
 
+	@Option(name = "--threads", usage = "Number of merge source/target pairs to check concurrently. Each thread uses its own SVN client. Output order always matches the order of the pairs on the command line.")
+	private int					threads		= 1;
+
+	@Option(name = "--maxPerServer", usage = "Maximum number of concurrent checks against any single SVN server when running with more than one thread.")
+	private int					maxPerServer	= 4;
+
+	@Option(name = "--stateDir", usage = "Directory in which to keep the result for each merge source/target pair between runs. When set, only revisions committed since the previous run, and any change to the merge target's mergeinfo, are checked. Pairs whose merge source has not been committed to, and whose merge target's mergeinfo for that source has not changed, are reported from their previous result without being checked at all.")
+	private File				stateDir;
+
+	@Option(name = "--watch", usage = "Keep running, checking again every given number of seconds. Only merge source/target pairs which have changed since the previous check are checked again, and the report files are replaced once each check is complete.")
+	private int					watch		= 0;
+
+	@Option(name = "--discoverChangedPaths", handler = ExplicitBooleanOptionHandler.class, usage = "Whether to keep and report the paths changed by each missing merge. They are always fetched from the server, so turning this off only saves memory and report size. Path ignore rules need these.")
+	private boolean				discoverChangedPaths	= true;
+
+	@Option(name = "--maxChangedPaths", usage = "Maximum number of changed paths to keep and report for each missing merge. Entries with more are marked with changedPathsTruncated=\"true\" and the full changedPathCount in the xml report.")
+	private int					maxChangedPaths			= -1;
+
+	@Option(name = "--minimalRevisionProperties", usage = "Only fetch the author, date and message of each missing merge, rather than all of its revision properties.")
+	private boolean				minimalRevisionProperties;
+
+	@Option(name = "--eligibility", usage = "Where to work out the eligible revisions. SERVER runs a log-eligible request for each pair. CLIENT works them out locally from each target's mergeinfo and each source's log, fetched once per run and shared between pairs. VERIFY does both, reports the server's result and logs any difference.")
+	private Eligibility			eligibility	= Eligibility.SERVER;
+
+	@Option(name = "--metricsFile", usage = "File to write the timings and counters of each run to, as json. The same metrics are written in the Prometheus text format to a file of the same name with '.prom' appended.")
+	private File				metricsFile;
+
+	private SVNSessionPool					sessionPool;
+	private SVNClientManager				clientManager;
+	private final List<SVNClientManager>	threadClientManagers	= new CopyOnWriteArrayList<>();
+	private ThreadLocal<SVNClientManager>	threadClientManager;
+	private final Map<String, Semaphore>	serverPermits			= new ConcurrentHashMap<>();
+	private ExecutorService				executor;
+	private MissingMergeState[]			pairStates;
+
 	public static void main(String[] args) throws Exception {
 		new MissingMergeChecker().doMain(args);
 	}
@@ -104,82 +204,438 @@ public class MissingMergeChecker extends AbstractWorker {
 			return false;
 		}
 
-		mergeSourceArray = mergeSources.split(";");
+		if ((mergeSources == null) == (discoverMergeSources == null)) {
+			getLogger().error("Exactly one of 'mergeSources' and 'discoverMergeSources' must be given.");
+			return false;
+		}
 		mergeTargetArray = mergeTargets.split(";");
-
-		if (mergeSourceArray.length != mergeTargetArray.length) {
-			getLogger().error("The number of 'fromPaths' must match the number of 'toPaths'.");
+		if (discoverMergeSources != null) {
+			if (mergeTargetArray.length != 1) {
+				getLogger().error("'mergeTargets' must be a single path when using 'discoverMergeSources'.");
+				return false;
+			}
+		} else {
+			mergeSourceArray = mergeSources.split(";");
+			if (mergeSourceArray.length != mergeTargetArray.length) {
+				getLogger().error("The number of 'fromPaths' must match the number of 'toPaths'.");
+				return false;
+			}
+		}
+		if (outputAsHTML && outputFormat != ReportFormat.XML) {
+			getLogger().error("'outputAsHTML' can only be used with the XML 'outputFormat'.");
+			return false;
+		}
+		if (watch < 0) {
+			getLogger().error("'watch' must not be negative.");
+			return false;
+		}
+		if (maxPerServer < 1) {
+			getLogger().error("'maxPerServer' must be at least 1.");
+			return false;
+		}
+		if (!discoverChangedPaths && ignoreRules.stream().anyMatch(rule -> rule.startsWith("path:"))) {
+			getLogger().error("Path ignore rules cannot be used when 'discoverChangedPaths' is false.");
 			return false;
 		}
 		return true;
 	}
 
-	@SuppressWarnings("unchecked")
 	private void doMain(String[] args) {
 		if (!handleArgs(args)) {
 			return;
 		}
 
-		SVNClientManager clientManager = createClientManager();
-		List<Predicate<SVNLogEntry>> logEntryValidators = getValidators();
-		OutputStream out = null;
+		ISVNAuthenticationManager authenticationManager = user != null && pass != null ? BasicAuthenticationManager.newInstance(user, pass.toCharArray()) : SVNWCUtil.createDefaultAuthenticationManager();
+		sessionPool = createSessionPool(authenticationManager);
+		clientManager = createClientManager();
+		threadClientManager = ThreadLocal.withInitial(() -> {
+			SVNClientManager threadManager = createClientManager();
+			threadClientManagers.add(threadManager);
+			return threadManager;
+		});
+		executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
 
 		try {
-			boolean startedSerializing = false;
-			out = new FileOutputStream(outputFile);
-			SVNXMLSerializer xmlSerializer = new SVNXMLSerializer(out);
-			for (int i = 0; i < mergeSourceArray.length; i++) {
-				String mergeTargetPath = mergeTargetArray[i];
-				String mergeSourcePath = mergeSourceArray[i];
-				SVNURL baseSVNURL = SVNURL.parseURIEncoded(baseUrl);
-				SVNURL mergeTarget = baseSVNURL.appendPath(mergeTargetPath, false);
-				SVNURL mergeSource = baseSVNURL.appendPath(mergeSourcePath, false);
-
-				MissingMergeWorker worker = new MissingMergeWorker(mergeSource, mergeTarget, verbose, clientManager, logEntryValidators.toArray(new Predicate[0]));
-				List<SVNLogEntry> missingMerges = worker.getMissingMerges();
-				BranchAwareXMLLogHandler handler = new BranchAwareXMLLogHandler(xmlSerializer, mergeTargetPath, mergeSourcePath, startedSerializing);
-				for (SVNLogEntry entry : missingMerges) {
-					handler.handleLogEntry(entry);
+			SVNURL baseSVNURL = SVNURL.parseURIEncoded(baseUrl);
+			long[] sourceLastChangedRevisions = null;
+			if (discoverMergeSources != null) {
+				sourceLastChangedRevisions = discoverMergeSources(clientManager.createRepository(baseSVNURL, true), baseSVNURL);
+			}
+			pairStates = new MissingMergeState[mergeSourceArray.length];
+			SVNURL[] mergeSourceURLs = toURLs(baseSVNURL, mergeSourceArray);
+			SVNURL[] mergeTargetURLs = toURLs(baseSVNURL, mergeTargetArray);
+
+			if (watch <= 0) {
+				SVNRepository repository = clientManager.createRepository(baseSVNURL, true);
+				long endRevision = getQuietTimeEndRevision(repository);
+				boolean[] changedPairs = findChangedPairs(repository, mergeSourceURLs, mergeTargetURLs, sourceLastChangedRevisions, endRevision);
+				writeReport(mergeSourceURLs, mergeTargetURLs, changedPairs, endRevision);
+			} else {
+				watch(baseSVNURL, mergeSourceURLs, mergeTargetURLs);
+			}
+		} catch (SVNException e) {
+			LOGGER.error("Error checking merge information", e);
+		} catch (IOException e) {
+			LOGGER.error("Error writing merge information to file", e);
+		} catch (TransformerException e) {
+			LOGGER.error("Error transforming merge output xml to html", e);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			for (SVNClientManager threadManager : threadClientManagers) {
+				threadManager.dispose();
+			}
+			clientManager.dispose();
+			if (verbose) {
+				LOGGER.info("SVN session pool: {}", sessionPool);
+			}
+		}
+
+	}
+
+	/**
+	 * List the subdirectories of the discovery root in a single request, and use each as a merge source of the single
+	 * merge target.
+	 * 
+	 * @return the revision in which each discovered merge source was last changed, in the same order as the sources.
+	 */
+	private long[] discoverMergeSources(SVNRepository repository, SVNURL baseSVNURL) throws SVNException {
+		SVNURL rootURL = baseSVNURL.appendPath(discoverMergeSources, false);
+		List<SVNDirEntry> entries = new ArrayList<>();
+		repository.getDir(SVNUtils.getRepositoryPath(repository, rootURL), -1, null, SVNDirEntry.DIRENT_KIND | SVNDirEntry.DIRENT_CREATED_REVISION, (ISVNDirEntryHandler) entry -> {
+			if (entry.getKind() == SVNNodeKind.DIR) {
+				entries.add(entry);
+			}
+		});
+		entries.sort(Comparator.comparing(SVNDirEntry::getName));
+
+		String mergeTarget = mergeTargets;
+		mergeSourceArray = new String[entries.size()];
+		mergeTargetArray = new String[entries.size()];
+		long[] lastChangedRevisions = new long[entries.size()];
+		for (int i = 0; i < entries.size(); i++) {
+			mergeSourceArray[i] = StringUtils.removeEnd(discoverMergeSources, "/") + "/" + entries.get(i).getName();
+			mergeTargetArray[i] = mergeTarget;
+			lastChangedRevisions[i] = entries.get(i).getRevision();
+		}
+		if (verbose) {
+			LOGGER.info("Discovered {} merge sources under {}", entries.size(), rootURL);
+		}
+		return lastChangedRevisions;
+	}
+
+	private static SVNURL[] toURLs(SVNURL baseSVNURL, String[] paths) throws SVNException {
+		SVNURL[] urls = new SVNURL[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			urls[i] = baseSVNURL.appendPath(paths[i], false);
+		}
+		return urls;
+	}
+
+	/**
+	 * Work out which pairs need to be checked at all. Without a state directory, every pair does. With one, a pair is
+	 * reported from its previous result, without asking the server for any eligible revisions, if its merge source has
+	 * not been changed since that result was recorded and its merge target's mergeinfo for the source is the same. The
+	 * mergeinfo of each distinct target is fetched once.
+	 * 
+	 * @param sourceLastChangedRevisions
+	 *            the revision in which each merge source was last changed, if already known, otherwise null
+	 */
+	private boolean[] findChangedPairs(SVNRepository repository, SVNURL[] mergeSourceURLs, SVNURL[] mergeTargetURLs, long[] sourceLastChangedRevisions, long endRevision) throws SVNException {
+		boolean[] changedPairs = new boolean[mergeSourceURLs.length];
+		Arrays.fill(changedPairs, true);
+		if (stateDir == null) {
+			return changedPairs;
+		}
+		long headRevision = repository.getLatestRevision();
+		long checkedRevision = endRevision >= 0 ? Math.min(endRevision, headRevision) : headRevision;
+		Map<String, SortedMap<String, SortedMap<String, RevisionRangeSet>>> catalogs = new HashMap<>();
+		int unchangedPairCount = 0;
+		for (int i = 0; i < mergeSourceURLs.length; i++) {
+			MissingMergeState state = MissingMergeState.load(MissingMergeState.getStateFile(stateDir, mergeSourceURLs[i], mergeTargetURLs[i]));
+			if (state == null || !state.isFor(mergeSourceURLs[i], mergeTargetURLs[i], discoverChangedPaths, maxChangedPaths, minimalRevisionProperties) || state.getHeadRevision() > checkedRevision) {
+				continue;
+			}
+			long lastChangedRevision = sourceLastChangedRevisions != null ? sourceLastChangedRevisions[i] : getLastChangedRevision(repository, mergeSourceURLs[i], headRevision);
+			if (lastChangedRevision < 0 || lastChangedRevision > state.getHeadRevision()) {
+				continue;
+			}
+			String targetPath = SVNUtils.getRepositoryPath(repository, mergeTargetURLs[i]);
+			String sourcePath = SVNUtils.getRepositoryPath(repository, mergeSourceURLs[i]);
+			SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog = catalogs.get(targetPath);
+			if (catalog == null) {
+				catalog = SVNUtils.getMergeInfoCatalog(repository, targetPath, headRevision);
+				catalogs.put(targetPath, catalog);
+			}
+			if (SVNUtils.getMergeInfoFingerprint(catalog, targetPath, sourcePath).equals(state.getTargetMergeInfoFingerprint())) {
+				changedPairs[i] = false;
+				pairStates[i] = state;
+				unchangedPairCount++;
+			}
+		}
+		if (verbose) {
+			LOGGER.info("Skipping {} of {} merge source/target pairs which have not changed since they were last checked", unchangedPairCount, mergeSourceURLs.length);
+		}
+		return changedPairs;
+	}
+
+	/**
+	 * Keep checking the pairs until interrupted. Each pass first asks the server for its latest revision, and only
+	 * looks any further if that has moved. Only the pairs whose merge source or target has been changed since the
+	 * previous pass are checked again; the rest are reported from the result of their last check. With a quiet time, a
+	 * merge source only counts as changed once the change has left the quiet time window. Merge sources are discovered
+	 * again whenever the repository has moved, so that new branches are picked up and deleted ones dropped; the pairs
+	 * which were already known keep the result of their last check.
+	 */
+	private void watch(SVNURL baseSVNURL, SVNURL[] mergeSourceURLs, SVNURL[] mergeTargetURLs) {
+		long lastHeadRevision = -1;
+		long[] lastChangedRevisions = new long[mergeSourceURLs.length * 2];
+		Arrays.fill(lastChangedRevisions, -1);
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				SVNRepository repository = clientManager.createRepository(baseSVNURL, true);
+				long headRevision = repository.getLatestRevision();
+				if (discoverMergeSources != null && lastHeadRevision >= 0 && headRevision != lastHeadRevision) {
+					SVNURL[] previousSourceURLs = mergeSourceURLs;
+					discoverMergeSources(repository, baseSVNURL);
+					mergeSourceURLs = toURLs(baseSVNURL, mergeSourceArray);
+					mergeTargetURLs = toURLs(baseSVNURL, mergeTargetArray);
+					lastChangedRevisions = keepKnownPairs(previousSourceURLs, mergeSourceURLs, lastChangedRevisions);
+				}
+				// Entries leave the quiet time window as time passes, so the report may change even when the repository hasn't.
+				if (headRevision != lastHeadRevision || quietTime > 0) {
+					long endRevision = getQuietTimeEndRevision(repository);
+					long[] changedRevisions = new long[lastChangedRevisions.length];
+					boolean[] changedPairs = new boolean[mergeSourceURLs.length];
+					int changedPairCount = 0;
+					for (int i = 0; i < mergeSourceURLs.length; i++) {
+						changedRevisions[i * 2] = getLastChangedRevision(repository, mergeSourceURLs[i], endRevision >= 0 ? endRevision : headRevision);
+						changedRevisions[i * 2 + 1] = getLastChangedRevision(repository, mergeTargetURLs[i], headRevision);
+						changedPairs[i] = pairStates[i] == null || changedRevisions[i * 2] != lastChangedRevisions[i * 2] || changedRevisions[i * 2 + 1] != lastChangedRevisions[i * 2 + 1];
+						if (changedPairs[i]) {
+							changedPairCount++;
+						}
+					}
+					if (verbose) {
+						LOGGER.info("Repository is at r{}, checking {} of {} merge source/target pairs", headRevision, changedPairCount, mergeSourceURLs.length);
+					}
+					writeReport(mergeSourceURLs, mergeTargetURLs, changedPairs, endRevision);
+					lastHeadRevision = headRevision;
+					lastChangedRevisions = changedRevisions;
 				}
-				startedSerializing = handler.started();
+			} catch (SVNException e) {
+				LOGGER.error("Error checking merge information", e);
+			} catch (IOException e) {
+				LOGGER.error("Error writing merge information to file", e);
+			} catch (TransformerException e) {
+				LOGGER.error("Error transforming merge output xml to html", e);
 			}
-			if (startedSerializing) {
-				xmlSerializer.endDocument();
-				xmlSerializer.flush();
+			try {
+				Thread.sleep(watch * 1000L);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
+		}
+	}
 
-			if (outputAsHTML) {
-				File outputHTMLFile = new File(outputFile.getAbsolutePath() + ".html");
-				if (startedSerializing) {
-					Result xmlOutput = new StreamResult(outputHTMLFile);
+	/**
+	 * Carry the states and last changed revisions of the pairs which are still present over to their place among the
+	 * newly discovered merge sources. The discovered pairs all share the one merge target.
+	 * 
+	 * @return the last changed revisions of the source and target of each discovered pair, or -1 for new pairs.
+	 */
+	private long[] keepKnownPairs(SVNURL[] previousSourceURLs, SVNURL[] mergeSourceURLs, long[] previousChangedRevisions) {
+		Map<SVNURL, Integer> previousIndexes = new HashMap<>();
+		for (int i = 0; i < previousSourceURLs.length; i++) {
+			previousIndexes.put(previousSourceURLs[i], i);
+		}
+		MissingMergeState[] previousStates = pairStates;
+		pairStates = new MissingMergeState[mergeSourceURLs.length];
+		long[] lastChangedRevisions = new long[mergeSourceURLs.length * 2];
+		Arrays.fill(lastChangedRevisions, -1);
+		for (int i = 0; i < mergeSourceURLs.length; i++) {
+			Integer previousIndex = previousIndexes.get(mergeSourceURLs[i]);
+			if (previousIndex != null) {
+				pairStates[i] = previousStates[previousIndex];
+				lastChangedRevisions[i * 2] = previousChangedRevisions[previousIndex * 2];
+				lastChangedRevisions[i * 2 + 1] = previousChangedRevisions[previousIndex * 2 + 1];
+			}
+		}
+		return lastChangedRevisions;
+	}
+
+	/**
+	 * Resolve the start of the quiet time window to the last revision committed before it, so that every pair in the run
+	 * is checked up to the same revision and the server never evaluates the entries inside the window.
+	 * 
+	 * @return the youngest merge source revision to check, or -1 if there is no quiet time.
+	 */
+	private long getQuietTimeEndRevision(SVNRepository repository) throws SVNException {
+		if (quietTime <= 0) {
+			return -1;
+		}
+		long endRevision = repository.getDatedRevision(new Date(System.currentTimeMillis() - quietTime * 1000L));
+		if (verbose) {
+			LOGGER.info("Ignoring commits in the last {}s, i.e. after r{}", quietTime, endRevision);
+		}
+		return endRevision;
+	}
 
-					Source xmlInput = new StreamSource(outputFile);
-					InputStream is = getClass().getClassLoader().getResourceAsStream("svnlog.xsl");
-					Source xsl = new StreamSource(is);
-					xsl.setSystemId("A System ID");
+	/**
+	 * 
+	 * @return the revision in which the given url, or anything below it, was last changed, or -1 if it does not exist.
+	 */
+	private static long getLastChangedRevision(SVNRepository repository, SVNURL url, long revision) throws SVNException {
+		SVNDirEntry entry = repository.info(SVNUtils.getRepositoryPath(repository, url), revision);
+		return entry == null ? -1 : entry.getRevision();
+	}
 
-					TransformerFactory factory = TransformerFactory.newInstance();
-					Transformer transformer = factory.newTransformer(xsl);
-					transformer.setParameter("baseUrl", baseUrl);
+	/**
+	 * Check the changed pairs, report the others from their previous result, and replace the report files with the new
+	 * report once it is complete.
+	 */
+	private void writeReport(SVNURL[] mergeSourceURLs, SVNURL[] mergeTargetURLs, boolean[] changedPairs, long endRevision) throws SVNException, IOException, TransformerException {
+		IgnoreRulesMergeCheckerPredicate ignoreRulesPredicate = createIgnoreRules(ignoreRules);
+		Predicate<SVNLogEntry>[] logEntryValidators = getLogEntryValidators(ignoreRulesPredicate);
+		File reportDir = outputFile.getAbsoluteFile().getParentFile();
+		File htmlOutputFile = new File(outputFile.getAbsolutePath() + ".html");
+		File tempOutputFile = File.createTempFile(outputFile.getName(), ".tmp", reportDir);
+		File tempHTMLOutputFile = outputAsHTML ? File.createTempFile(htmlOutputFile.getName(), ".tmp", reportDir) : null;
+		MissingMergeMetrics metrics = metricsFile != null ? new MissingMergeMetrics() : null;
+		ClientSideEligibility clientSideEligibility = eligibility != Eligibility.SERVER ? new ClientSideEligibility() : null;
+		CountingOutputStream out = null;
+		OutputStream reportOut = null;
+		CountingOutputStream htmlOut = null;
 
-					transformer.transform(xmlInput, xmlOutput);
-				} else {
-					FileWriter fw = new FileWriter(outputHTMLFile);
-					fw.write("<html><body><center><h3>");
-					SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-					fw.write(String.format("Missing Merge Report - %s", sdf.format(new Date())));
-					fw.write("</h3>");
-					fw.write("<h4>No Missing Merges</h4></center></body></html>");
-					fw.close();
+		try {
+			out = new CountingOutputStream(new FileOutputStream(tempOutputFile));
+			reportOut = gzipOutput ? new GZIPOutputStream(out, 65536) : out;
+			SVNXMLSerializer xmlSerializer = null;
+			ReportSink reportSink;
+			if (outputFormat == ReportFormat.JSONL) {
+				reportSink = new JSONLinesReportSink(new BufferedWriter(new OutputStreamWriter(reportOut, StandardCharsets.UTF_8), 65536));
+			} else {
+				xmlSerializer = new SVNXMLSerializer(reportOut);
+				ContentHandler reportHandler = xmlSerializer;
+				if (outputAsHTML) {
+					// The html is transformed from the same SAX events as the xml is written from, rather than re-read from disk.
+					htmlOut = new CountingOutputStream(new FileOutputStream(tempHTMLOutputFile));
+					ContentHandler htmlHandler = new LocalNameContentHandler(createHTMLHandler(htmlOut));
+					if (metrics != null) {
+						htmlHandler = new TimedContentHandler(htmlHandler, metrics::addTransformTime);
+					}
+					reportHandler = new TeeContentHandler(xmlSerializer, htmlHandler);
 				}
+				reportSink = new XMLReportSink(reportHandler);
 			}
+			AuthorRollupReportSink authorRollup = new AuthorRollupReportSink(reportSink);
+			// Bounds how many pairs behind the head can be holding entries at once, with some slack for a slow head pair.
+			OrderedLogEntryDispatcher dispatcher = new OrderedLogEntryDispatcher(mergeSourceArray.length, threads * 2, pairIndex -> {
+				ISVNLogEntryHandler pairHandler = authorRollup.openPair(mergeSourceArray[pairIndex], mergeTargetArray[pairIndex]);
+				return metrics == null ? pairHandler : timeSerialization(pairHandler, metrics.getPair(pairIndex, mergeSourceURLs[pairIndex], mergeTargetURLs[pairIndex]));
+			});
 
-		} catch (SVNException e) {
-			LOGGER.error("Error checking merge information", e);
-		} catch (SAXException | IOException e) {
-			LOGGER.error("Error writing merge information to file", e);
-		} catch (TransformerException e) {
-			LOGGER.error("Error transforming merge output xml to html", e);
+			List<Future<?>> pendingChecks = new ArrayList<>();
+			try {
+				for (int i = 0; i < mergeSourceArray.length; i++) {
+					int pairIndex = i;
+					SVNURL mergeTarget = mergeTargetURLs[i];
+					SVNURL mergeSource = mergeSourceURLs[i];
+					if (!changedPairs[i]) {
+						createWorker(pairIndex, mergeSource, mergeTarget, clientManager, logEntryValidators, metrics, endRevision, clientSideEligibility).reportMissingMerges(pairStates[i], dispatcher.handlerFor(pairIndex));
+						dispatcher.complete(pairIndex);
+					} else if (executor == null) {
+						MissingMergeWorker worker = createWorker(pairIndex, mergeSource, mergeTarget, clientManager, logEntryValidators, metrics, endRevision, clientSideEligibility);
+						checkPair(worker, pairIndex, mergeSource, mergeTarget, dispatcher.handlerFor(pairIndex));
+						dispatcher.complete(pairIndex);
+					} else {
+						Semaphore permits = serverPermits.computeIfAbsent(getServerKey(mergeSource), key -> new Semaphore(maxPerServer));
+						pendingChecks.add(executor.submit(() -> {
+							Throwable failure = null;
+							try {
+								// Checks are taken from the queue in pair order, so the pair at the head is never left waiting here.
+								dispatcher.awaitTurn(pairIndex);
+								permits.acquire();
+								try {
+									MissingMergeWorker worker = createWorker(pairIndex, mergeSource, mergeTarget, threadClientManager.get(), logEntryValidators, metrics, endRevision, clientSideEligibility);
+									checkPair(worker, pairIndex, mergeSource, mergeTarget, dispatcher.handlerFor(pairIndex));
+								} finally {
+									permits.release();
+								}
+							} catch (Throwable e) {
+								failure = e;
+								throw e;
+							} finally {
+								// A failed pair never completes, so every pair behind it is woken and cancelled instead.
+								if (failure == null) {
+									dispatcher.complete(pairIndex);
+								} else {
+									dispatcher.abort(failure);
+								}
+							}
+							return null;
+						}));
+					}
+				}
+				for (Future<?> pendingCheck : pendingChecks) {
+					waitForCheck(pendingCheck);
+				}
+			} catch (Exception e) {
+				abandonChecks(pendingChecks, dispatcher, e);
+				throw e;
+			}
+
+			boolean startedSerializing = authorRollup.finish();
+			if (xmlSerializer != null) {
+				xmlSerializer.flush();
+			}
+
+			if (outputAsHTML && !startedSerializing) {
+				Writer htmlWriter = new OutputStreamWriter(htmlOut);
+				htmlWriter.write("<html><body><center><h3>");
+				SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+				htmlWriter.write(String.format("Missing Merge Report - %s", sdf.format(new Date())));
+				htmlWriter.write("</h3>");
+				htmlWriter.write("<h4>No Missing Merges</h4></center></body></html>");
+				htmlWriter.flush();
+			}
+
+			reportOut.close();
+			long reportBytes = out.getByteCount();
+			out = null;
+			moveIntoPlace(tempOutputFile, outputFile);
+			long htmlBytes = 0;
+			if (outputAsHTML) {
+				htmlOut.close();
+				htmlBytes = htmlOut.getByteCount();
+				htmlOut = null;
+				moveIntoPlace(tempHTMLOutputFile, htmlOutputFile);
+			}
+			writeUsers(authorRollup);
+			if (clientSideEligibility != null && verbose) {
+				LOGGER.info("Client-side eligibility: {}", clientSideEligibility);
+			}
+			if (eligibility == Eligibility.VERIFY) {
+				if (clientSideEligibility.getMismatchCount() > 0) {
+					LOGGER.error("Client-side eligibility differed from the server for {} of {} merge source/target pairs", clientSideEligibility.getMismatchCount(), mergeSourceArray.length);
+				} else {
+					LOGGER.info("Client-side eligibility matched the server for every checked merge source/target pair");
+				}
+			}
+			if (ignoreRulesPredicate != null && verbose) {
+				for (Map.Entry<String, Long> ruleMatches : ignoreRulesPredicate.getMatchCounts().entrySet()) {
+					LOGGER.info("Ignore rule '{}' matched {} log entries", ruleMatches.getKey(), ruleMatches.getValue());
+				}
+			}
+			if (metrics != null) {
+				if (ignoreRulesPredicate != null) {
+					metrics.setRuleMatches(ignoreRulesPredicate.getMatchCounts());
+				}
+				metrics.setBytesWritten(outputFormat.name().toLowerCase() + (gzipOutput ? ".gz" : ""), reportBytes, htmlBytes);
+				metrics.finish();
+				writeMetrics(metrics);
+			}
 		} finally {
 			if (out != null) {
 				try {
@@ -187,27 +643,207 @@ public class MissingMergeChecker extends AbstractWorker {
 				} catch (IOException e) {
 				}
 			}
+			if (htmlOut != null) {
+				try {
+					htmlOut.close();
+				} catch (IOException e) {
+				}
+			}
+			Files.deleteIfExists(tempOutputFile.toPath());
+			if (tempHTMLOutputFile != null) {
+				Files.deleteIfExists(tempHTMLOutputFile.toPath());
+			}
 		}
+	}
 
+	/**
+	 * Write the authors of the missing merges to the users file, replacing those of the previous run, or to standard out
+	 * if there is no users file.
+	 */
+	private void writeUsers(AuthorRollupReportSink authorRollup) throws IOException {
+		if (usersOutputFile == null) {
+			authorRollup.writeAuthors(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+			return;
+		}
+		File tempUsersFile = File.createTempFile(usersOutputFile.getName(), ".tmp", usersOutputFile.getAbsoluteFile().getParentFile());
+		try {
+			try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempUsersFile), StandardCharsets.UTF_8)) {
+				authorRollup.writeAuthors(writer);
+			}
+			moveIntoPlace(tempUsersFile, usersOutputFile);
+		} finally {
+			Files.deleteIfExists(tempUsersFile.toPath());
+		}
+		if (verbose) {
+			LOGGER.info("Wrote {} users with missing merges to {}", authorRollup.getAuthorCount(), usersOutputFile);
+		}
 	}
 
-	private SVNClientManager createClientManager() {
-		SVNClientManager clientManager = SVNClientManager.newInstance();
-		if (user != null && pass != null) {
-			clientManager.setAuthenticationManager(BasicAuthenticationManager.newInstance(user, pass.toCharArray()));
+	/**
+	 * Write the metrics of a run as json, and in the Prometheus text format alongside, replacing those of the previous
+	 * run.
+	 */
+	private void writeMetrics(MissingMergeMetrics metrics) throws IOException {
+		File metricsDir = metricsFile.getAbsoluteFile().getParentFile();
+		File prometheusFile = new File(metricsFile.getAbsolutePath() + ".prom");
+		File tempMetricsFile = File.createTempFile(metricsFile.getName(), ".tmp", metricsDir);
+		File tempPrometheusFile = File.createTempFile(prometheusFile.getName(), ".tmp", metricsDir);
+		try {
+			try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempMetricsFile), StandardCharsets.UTF_8)) {
+				metrics.writeJSON(writer);
+			}
+			try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempPrometheusFile), StandardCharsets.UTF_8)) {
+				metrics.writePrometheus(writer);
+			}
+			moveIntoPlace(tempMetricsFile, metricsFile);
+			moveIntoPlace(tempPrometheusFile, prometheusFile);
+		} finally {
+			Files.deleteIfExists(tempMetricsFile.toPath());
+			Files.deleteIfExists(tempPrometheusFile.toPath());
+		}
+		if (verbose) {
+			LOGGER.info("Checked {} merge source/target pairs in {}ms", metrics.getPairs().size(), metrics.getTotalNanos() / 1000000);
+		}
+	}
+
+	/**
+	 * Replace the report file in one step, so that anything reading it never sees a partially written report.
+	 */
+	private static void moveIntoPlace(File tempFile, File reportFile) throws IOException {
+		Files.move(tempFile.toPath(), reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * 
+	 * @return a handler which transforms the SAX events of the xml report to html as they arrive.
+	 */
+	private TransformerHandler createHTMLHandler(OutputStream htmlOut) throws TransformerConfigurationException {
+		TransformerHandler htmlHandler;
+		synchronized (MissingMergeChecker.class) {
+			htmlHandler = getTransformerFactory().newTransformerHandler(getHTMLTemplates());
+		}
+		htmlHandler.getTransformer().setParameter("baseUrl", baseUrl);
+		htmlHandler.setResult(new StreamResult(htmlOut));
+		return htmlHandler;
+	}
+
+	/**
+	 * 
+	 * @return the html report stylesheet, compiled on first use and shared from then on.
+	 */
+	private static synchronized Templates getHTMLTemplates() throws TransformerConfigurationException {
+		if (htmlTemplates == null) {
+			InputStream is = MissingMergeChecker.class.getClassLoader().getResourceAsStream("svnlog.xsl");
+			Source xsl = new StreamSource(is);
+			xsl.setSystemId("A System ID");
+			htmlTemplates = getTransformerFactory().newTemplates(xsl);
 		}
-		return clientManager;
+		return htmlTemplates;
 	}
 
-	private List<Predicate<SVNLogEntry>> getValidators() {
-		List<Predicate<SVNLogEntry>> logEntryValidators = new ArrayList<>();
-		if (StringUtils.isNotBlank(ignoreRegex)) {
-			logEntryValidators.add(new IgnoreRegexMergeCheckerPredicate(ignoreRegex, verbose));
+	private static synchronized SAXTransformerFactory getTransformerFactory() {
+		if (transformerFactory == null) {
+			transformerFactory = (SAXTransformerFactory) TransformerFactory.newInstance();
+		}
+		return transformerFactory;
+	}
+
+	/**
+	 * Run the worker for a single pair, resuming from its previous result if there is one. In watch mode the result is
+	 * kept in memory for the next pass, and if a state directory has been given it is also recorded there.
+	 */
+	private void checkPair(MissingMergeWorker worker, int pairIndex, SVNURL mergeSource, SVNURL mergeTarget, ISVNLogEntryHandler handler) throws SVNException, IOException {
+		if (stateDir == null && watch <= 0) {
+			worker.getMissingMerges(handler);
+			return;
+		}
+		File stateFile = stateDir == null ? null : MissingMergeState.getStateFile(stateDir, mergeSource, mergeTarget);
+		MissingMergeState previous = pairStates[pairIndex];
+		if (previous == null && stateFile != null) {
+			previous = MissingMergeState.load(stateFile);
 		}
-		if (quietTime > 0) {
-			logEntryValidators.add(new QuietTimeMergeCheckerPredicate(quietTime * 1000, verbose));
+		MissingMergeState state = worker.getMissingMerges(handler, previous);
+		if (stateFile != null) {
+			state.save(stateFile);
 		}
-		return logEntryValidators;
+		pairStates[pairIndex] = state;
+	}
+
+	/**
+	 * Give up on every check which has not yet finished, after one of them, or the report, has failed. Checks waiting for
+	 * their turn are woken and cancelled, those running are cancelled as they report their next entry, and those not yet
+	 * started never start, so that none is left holding a thread of the executor, which is reused by the next pass in
+	 * 'watch' mode.
+	 */
+	private static void abandonChecks(List<Future<?>> pendingChecks, OrderedLogEntryDispatcher dispatcher, Exception failure) {
+		dispatcher.abort(failure);
+		for (Future<?> pendingCheck : pendingChecks) {
+			pendingCheck.cancel(false);
+		}
+	}
+
+	/**
+	 * Wait for a concurrently executed {@link MissingMergeWorker} to finish, rethrowing any {@link SVNException} or
+	 * {@link IOException} it failed with.
+	 */
+	private static void waitForCheck(Future<?> pendingCheck) throws SVNException, IOException {
+		try {
+			pendingCheck.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.CANCELLED, "Interrupted while waiting for missing merge check");
+			throw new SVNException(err, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SVNException) {
+				throw (SVNException) e.getCause();
+			}
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.UNKNOWN, "Missing merge check failed");
+			throw new SVNException(err, e.getCause());
+		}
+	}
+
+	/**
+	 *
+	 * @return the key used to limit the number of concurrent checks against the server hosting the given url.
+	 */
+	private static String getServerKey(SVNURL url) {
+		return url.getProtocol() + "://" + url.getHost() + ":" + url.getPort();
+	}
+
+	private MissingMergeWorker createWorker(int pairIndex, SVNURL mergeSource, SVNURL mergeTarget, SVNClientManager pairClientManager, Predicate<SVNLogEntry>[] logEntryValidators, MissingMergeMetrics metrics, long endRevision, ClientSideEligibility clientSideEligibility) {
+		MissingMergeWorker worker = new MissingMergeWorker(mergeSource, mergeTarget, verbose, pairClientManager, logEntryValidators);
+		worker.setEndRevision(endRevision);
+		worker.setDiscoverChangedPaths(discoverChangedPaths);
+		worker.setMaxChangedPaths(maxChangedPaths);
+		worker.setMinimalRevisionProperties(minimalRevisionProperties);
+		worker.setClientSideEligibility(clientSideEligibility, eligibility == Eligibility.VERIFY);
+		if (metrics != null) {
+			worker.setMetrics(metrics.getPair(pairIndex, mergeSource, mergeTarget));
+		}
+		return worker;
+	}
+
+	/**
+	 * Time the writing of each entry as it is actually written to the report, which with more than one thread may be
+	 * long after the worker handed it on.
+	 */
+	private static ISVNLogEntryHandler timeSerialization(ISVNLogEntryHandler handler, PairMetrics pairMetrics) {
+		return logEntry -> {
+			long start = System.nanoTime();
+			handler.handleLogEntry(logEntry);
+			pairMetrics.addPhaseTime(MissingMergeMetrics.PHASE_SERIALIZE, System.nanoTime() - start);
+		};
+	}
+
+	/**
+	 * 
+	 * @return a new SVN client whose sessions come from the pool shared by the whole run.
+	 */
+	private SVNClientManager createClientManager() {
+		return SVNClientManager.newInstance(SVNWCUtil.createDefaultOptions(true), sessionPool);
 	}
 
 	@Override
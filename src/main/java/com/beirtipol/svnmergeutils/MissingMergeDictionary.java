@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interned author names and repository paths, each stored once however many {@link MissingMergeRecord}s refer to it.
+ * Records hold indexes into these tables rather than strings of their own.
+ *
+ * Strings are never removed, so a dictionary grows with the number of distinct authors and changed paths seen, not
+ * with the number of records. Each check, state and report has a dictionary of its own, which goes when its records
+ * do, so that a long-running process does not keep every string it has ever seen. A single instance may be used by any
+ * number of threads at once.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class MissingMergeDictionary {
+	private final Table	authors	= new Table();
+	private final Table	paths	= new Table();
+
+	public int internAuthor(String author) {
+		return authors.intern(author);
+	}
+
+	public String getAuthor(int index) {
+		return authors.get(index);
+	}
+
+	public int internPath(String path) {
+		return paths.intern(path);
+	}
+
+	public String getPath(int index) {
+		return paths.get(index);
+	}
+
+	/**
+	 * 
+	 * @return the number of distinct authors held.
+	 */
+	public int getAuthorCount() {
+		return authors.size();
+	}
+
+	/**
+	 * 
+	 * @return the number of distinct paths held.
+	 */
+	public int getPathCount() {
+		return paths.size();
+	}
+
+	private static class Table {
+		private final Map<String, Integer>	indexes	= new HashMap<>();
+		private final List<String>			values	= new ArrayList<>();
+
+		private synchronized int intern(String value) {
+			Integer index = indexes.get(value);
+			if (index == null) {
+				index = values.size();
+				values.add(value);
+				indexes.put(value, index);
+			}
+			return index;
+		}
+
+		private synchronized String get(int index) {
+			return values.get(index);
+		}
+
+		private synchronized int size() {
+			return values.size();
+		}
+	}
+}
@@ -0,0 +1,317 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.tmatesoft.svn.core.SVNURL;
+
+/**
+ * Timers and counters for a single {@link MissingMergeChecker} run, i.e. one report. Time is recorded per merge
+ * source/target pair and per phase:
+ * <ul>
+ * <li>{@value #PHASE_LOG_MERGEINFO} - waiting for the server to evaluate and send the eligible log entries</li>
+ * <li>{@value #PHASE_FILTER} - applying the log entry validators</li>
+ * <li>{@value #PHASE_SERIALIZE} - writing the entries which passed to the report, including any html transformation</li>
+ * </ul>
+ * along with run-wide totals for the html transformation and the bytes written. The metrics can be written as json,
+ * or in the Prometheus text exposition format for a node exporter textfile collector.
+ *
+ * All methods may be called concurrently.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class MissingMergeMetrics {
+	public static final String			PHASE_LOG_MERGEINFO	= "log_mergeinfo";
+	public static final String			PHASE_FILTER		= "filter";
+	public static final String			PHASE_SERIALIZE		= "serialize";
+
+	private static final String			PREFIX				= "svnmergeutils_missing_merge_";
+
+	private final long					startMillis			= System.currentTimeMillis();
+	private final long					startNanos			= System.nanoTime();
+	private final List<PairMetrics>		pairs				= new ArrayList<>();
+	private final LongAdder				transformNanos		= new LongAdder();
+	private volatile String				reportFormat		= "xml";
+	private final AtomicLong			reportBytesWritten	= new AtomicLong();
+	private final AtomicLong			htmlBytesWritten	= new AtomicLong();
+	private final AtomicLong			totalNanos			= new AtomicLong(-1);
+	private volatile Map<String, Long>	ruleMatches			= Collections.emptyMap();
+
+	/**
+	 *
+	 * @return the metrics for the given pair, created on first use.
+	 */
+	public synchronized PairMetrics getPair(int pairIndex, SVNURL mergeSource, SVNURL mergeTarget) {
+		while (pairs.size() <= pairIndex) {
+			pairs.add(null);
+		}
+		PairMetrics pair = pairs.get(pairIndex);
+		if (pair == null) {
+			pair = new PairMetrics(mergeSource, mergeTarget);
+			pairs.set(pairIndex, pair);
+		}
+		return pair;
+	}
+
+	public void addTransformTime(long nanos) {
+		transformNanos.add(nanos);
+	}
+
+	/**
+	 * 
+	 * @param ruleMatches
+	 *            the number of entries ignored by each ignore rule during the run
+	 */
+	public void setRuleMatches(Map<String, Long> ruleMatches) {
+		this.ruleMatches = new LinkedHashMap<>(ruleMatches);
+	}
+
+	public Map<String, Long> getRuleMatches() {
+		return ruleMatches;
+	}
+
+	/**
+	 * 
+	 * @param reportFormat
+	 *            name of the format the report was written in, e.g. 'xml' or 'jsonl.gz'
+	 * @param reportBytes
+	 *            size of the report as written to disk
+	 * @param htmlBytes
+	 *            size of the html report, or 0 if there was none
+	 */
+	public void setBytesWritten(String reportFormat, long reportBytes, long htmlBytes) {
+		this.reportFormat = reportFormat;
+		reportBytesWritten.set(reportBytes);
+		htmlBytesWritten.set(htmlBytes);
+	}
+
+	/**
+	 * Stop the run timer. Metrics written before this is called report the time elapsed so far.
+	 */
+	public void finish() {
+		totalNanos.compareAndSet(-1, System.nanoTime() - startNanos);
+	}
+
+	public long getTotalNanos() {
+		long total = totalNanos.get();
+		return total < 0 ? System.nanoTime() - startNanos : total;
+	}
+
+	public long getTransformNanos() {
+		return transformNanos.sum();
+	}
+
+	public String getReportFormat() {
+		return reportFormat;
+	}
+
+	public long getReportBytesWritten() {
+		return reportBytesWritten.get();
+	}
+
+	public long getHTMLBytesWritten() {
+		return htmlBytesWritten.get();
+	}
+
+	public synchronized List<PairMetrics> getPairs() {
+		List<PairMetrics> result = new ArrayList<>();
+		for (PairMetrics pair : pairs) {
+			if (pair != null) {
+				result.add(pair);
+			}
+		}
+		return result;
+	}
+
+	public void writeJSON(Writer out) throws IOException {
+		out.write("{\n");
+		out.write("  \"startTime\": " + startMillis + ",\n");
+		out.write("  \"totalSeconds\": " + seconds(getTotalNanos()) + ",\n");
+		out.write("  \"transformSeconds\": " + seconds(getTransformNanos()) + ",\n");
+		out.write("  \"bytesWritten\": {" + JSONUtils.toJSONString(getReportFormat()) + ": " + getReportBytesWritten() + ", \"html\": " + getHTMLBytesWritten() + "},\n");
+		out.write("  \"ruleMatches\": {" + jsonObjectBody(getRuleMatches(), false) + "},\n");
+		out.write("  \"pairs\": [");
+		String pairSeparator = "\n";
+		for (PairMetrics pair : getPairs()) {
+			out.write(pairSeparator);
+			out.write("    {\"source\": " + JSONUtils.toJSONString(pair.mergeSource.toString()) + ", \"target\": " + JSONUtils.toJSONString(pair.mergeTarget.toString()));
+			out.write(", \"entriesReceived\": " + pair.getEntriesReceived() + ", \"entriesReported\": " + pair.getEntriesReported());
+			out.write(", \"phaseSeconds\": {" + jsonObjectBody(pair.getPhaseNanos(), true) + "}");
+			out.write(", \"entriesFiltered\": {" + jsonObjectBody(pair.getEntriesFiltered(), false) + "}}");
+			pairSeparator = ",\n";
+		}
+		out.write("\n  ]\n}\n");
+		out.flush();
+	}
+
+	public void writePrometheus(Writer out) throws IOException {
+		List<PairMetrics> pairList = getPairs();
+
+		writePrometheusHeader(out, "run_seconds", "Wall time of the missing merge check run.");
+		out.write(PREFIX + "run_seconds " + seconds(getTotalNanos()) + "\n");
+		writePrometheusHeader(out, "transform_seconds", "Time spent transforming the xml report to html.");
+		out.write(PREFIX + "transform_seconds " + seconds(getTransformNanos()) + "\n");
+		writePrometheusHeader(out, "bytes_written", "Size of each report written.");
+		out.write(PREFIX + "bytes_written{format=" + labelValue(getReportFormat()) + "} " + getReportBytesWritten() + "\n");
+		out.write(PREFIX + "bytes_written{format=\"html\"} " + getHTMLBytesWritten() + "\n");
+
+		writePrometheusHeader(out, "phase_seconds", "Time spent in each phase of the check of a merge source/target pair.");
+		for (PairMetrics pair : pairList) {
+			for (Map.Entry<String, Long> phase : pair.getPhaseNanos().entrySet()) {
+				out.write(PREFIX + "phase_seconds{" + pairLabels(pair) + ",phase=" + labelValue(phase.getKey()) + "} " + seconds(phase.getValue()) + "\n");
+			}
+		}
+		writePrometheusHeader(out, "entries_received", "Eligible log entries received from the server for a merge source/target pair.");
+		for (PairMetrics pair : pairList) {
+			out.write(PREFIX + "entries_received{" + pairLabels(pair) + "} " + pair.getEntriesReceived() + "\n");
+		}
+		writePrometheusHeader(out, "entries_reported", "Log entries reported as missing merges for a merge source/target pair.");
+		for (PairMetrics pair : pairList) {
+			out.write(PREFIX + "entries_reported{" + pairLabels(pair) + "} " + pair.getEntriesReported() + "\n");
+		}
+		writePrometheusHeader(out, "entries_filtered", "Log entries left out of the report by each log entry validator.");
+		for (PairMetrics pair : pairList) {
+			for (Map.Entry<String, Long> filtered : pair.getEntriesFiltered().entrySet()) {
+				out.write(PREFIX + "entries_filtered{" + pairLabels(pair) + ",predicate=" + labelValue(filtered.getKey()) + "} " + filtered.getValue() + "\n");
+			}
+		}
+		writePrometheusHeader(out, "rule_matches", "Log entries left out of the report by each ignore rule, across all pairs.");
+		for (Map.Entry<String, Long> rule : getRuleMatches().entrySet()) {
+			out.write(PREFIX + "rule_matches{rule=" + labelValue(rule.getKey()) + "} " + rule.getValue() + "\n");
+		}
+		out.flush();
+	}
+
+	private static void writePrometheusHeader(Writer out, String name, String help) throws IOException {
+		out.write("# HELP " + PREFIX + name + " " + help + "\n");
+		out.write("# TYPE " + PREFIX + name + " gauge\n");
+	}
+
+	private static String pairLabels(PairMetrics pair) {
+		return "source=" + labelValue(pair.mergeSource.toString()) + ",target=" + labelValue(pair.mergeTarget.toString());
+	}
+
+	private static String labelValue(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+	}
+
+	private static String jsonObjectBody(Map<String, Long> values, boolean asSeconds) {
+		StringBuilder result = new StringBuilder();
+		for (Map.Entry<String, Long> entry : values.entrySet()) {
+			if (result.length() > 0) {
+				result.append(", ");
+			}
+			result.append(JSONUtils.toJSONString(entry.getKey())).append(": ").append(asSeconds ? seconds(entry.getValue()) : Long.toString(entry.getValue()));
+		}
+		return result.toString();
+	}
+
+	private static String seconds(long nanos) {
+		return Double.toString(nanos / 1e9);
+	}
+
+	/**
+	 * The metrics for the check of a single merge source/target pair.
+	 */
+	public static class PairMetrics {
+		private final SVNURL					mergeSource;
+		private final SVNURL					mergeTarget;
+		private final Map<String, LongAdder>	phaseNanos		= new ConcurrentHashMap<>();
+		private final Map<String, LongAdder>	entriesFiltered	= new ConcurrentHashMap<>();
+		private final LongAdder					entriesReceived	= new LongAdder();
+		private final LongAdder					entriesReported	= new LongAdder();
+
+		private PairMetrics(SVNURL mergeSource, SVNURL mergeTarget) {
+			this.mergeSource = mergeSource;
+			this.mergeTarget = mergeTarget;
+			for (String phase : new String[] { PHASE_LOG_MERGEINFO, PHASE_FILTER, PHASE_SERIALIZE }) {
+				phaseNanos.put(phase, new LongAdder());
+			}
+		}
+
+		public void addPhaseTime(String phase, long nanos) {
+			phaseNanos.computeIfAbsent(phase, key -> new LongAdder()).add(nanos);
+		}
+
+		public void entryReceived() {
+			entriesReceived.increment();
+		}
+
+		public void entryReported() {
+			entriesReported.increment();
+		}
+
+		/**
+		 * Record that an entry was left out of the report by the given validator.
+		 */
+		public void entryFiltered(String predicate) {
+			entriesFiltered.computeIfAbsent(predicate, key -> new LongAdder()).increment();
+		}
+
+		public SVNURL getMergeSource() {
+			return mergeSource;
+		}
+
+		public SVNURL getMergeTarget() {
+			return mergeTarget;
+		}
+
+		public long getEntriesReceived() {
+			return entriesReceived.sum();
+		}
+
+		public long getEntriesReported() {
+			return entriesReported.sum();
+		}
+
+		public SortedMap<String, Long> getPhaseNanos() {
+			return sum(phaseNanos);
+		}
+
+		public SortedMap<String, Long> getEntriesFiltered() {
+			return sum(entriesFiltered);
+		}
+
+		private static SortedMap<String, Long> sum(Map<String, LongAdder> adders) {
+			SortedMap<String, Long> result = new TreeMap<>();
+			for (Map.Entry<String, LongAdder> entry : adders.entrySet()) {
+				result.put(entry.getKey(), entry.getValue().sum());
+			}
+			return result;
+		}
+	}
+}
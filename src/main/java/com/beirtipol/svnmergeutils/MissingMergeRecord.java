@@ -0,0 +1,171 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNRevisionProperty;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+
+/**
+ * A compact copy of a missing merge, for keeping many of them between being found and being reported. The revision
+ * and date are held as primitives, and the author and changed paths as indexes into a {@link MissingMergeDictionary}
+ * shared by the records of a check, rather than as an {@link SVNLogEntry} with its own strings, dates and maps.
+ *
+ * Records are turned back into log entries one at a time as they are reported, and the log entry has the same
+ * revision properties, changed paths and merge flags as the one the record was made from. Changed paths come back in
+ * path order.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class MissingMergeRecord {
+	private static final SVNNodeKind[]		KINDS				= { SVNNodeKind.NONE, SVNNodeKind.FILE, SVNNodeKind.DIR, SVNNodeKind.UNKNOWN };
+	private static final byte				HAS_CHILDREN		= 1;
+	private static final byte				SUBTRACTIVE_MERGE	= 2;
+	private static final byte				NON_INHERITABLE		= 4;
+
+	private final MissingMergeDictionary	dictionary;
+	private final long						revision;
+	private final long						dateMicros;
+	private final int						author;
+	private final String					message;
+	private final SVNProperties				otherRevisionProperties;
+	private final int[]						paths;
+	private final byte[]					pathTypes;
+	private final byte[]					pathKinds;
+	private final int[]						copyPaths;
+	private final long[]					copyRevisions;
+	private final int						changedPathCount;
+	private final byte						flags;
+
+	private MissingMergeRecord(SVNLogEntry logEntry, MissingMergeDictionary dictionary) {
+		this.dictionary = dictionary;
+		this.revision = logEntry.getRevision();
+
+		SVNProperties revisionProperties = logEntry.getRevisionProperties();
+		String date = revisionProperties.getStringValue(SVNRevisionProperty.DATE);
+		this.dateMicros = date == null ? -1 : SVNDate.parseDate(date).getTimeInMicros();
+		String authorName = revisionProperties.getStringValue(SVNRevisionProperty.AUTHOR);
+		this.author = authorName == null ? -1 : dictionary.internAuthor(authorName);
+		this.message = revisionProperties.getStringValue(SVNRevisionProperty.LOG);
+		SVNProperties others = new SVNProperties(revisionProperties);
+		others.remove(SVNRevisionProperty.DATE);
+		others.remove(SVNRevisionProperty.AUTHOR);
+		others.remove(SVNRevisionProperty.LOG);
+		this.otherRevisionProperties = others.isEmpty() ? null : others;
+
+		Map<String, SVNLogEntryPath> changedPaths = logEntry.getChangedPaths() == null ? new TreeMap<>() : new TreeMap<>(logEntry.getChangedPaths());
+		this.paths = new int[changedPaths.size()];
+		this.pathTypes = new byte[changedPaths.size()];
+		this.pathKinds = new byte[changedPaths.size()];
+		int[] copies = null;
+		long[] copyRevs = null;
+		int i = 0;
+		for (SVNLogEntryPath changedPath : changedPaths.values()) {
+			paths[i] = dictionary.internPath(changedPath.getPath());
+			pathTypes[i] = (byte) changedPath.getType();
+			pathKinds[i] = (byte) kindIndex(changedPath.getKind());
+			if (changedPath.getCopyPath() != null) {
+				if (copies == null) {
+					copies = new int[paths.length];
+					copyRevs = new long[paths.length];
+					Arrays.fill(copies, -1);
+				}
+				copies[i] = dictionary.internPath(changedPath.getCopyPath());
+				copyRevs[i] = changedPath.getCopyRevision();
+			}
+			i++;
+		}
+		this.copyPaths = copies;
+		this.copyRevisions = copyRevs;
+		this.changedPathCount = logEntry instanceof TruncatedLogEntry ? ((TruncatedLogEntry) logEntry).getChangedPathCount() : -1;
+		this.flags = (byte) ((logEntry.hasChildren() ? HAS_CHILDREN : 0) | (logEntry.isSubtractiveMerge() ? SUBTRACTIVE_MERGE : 0) | (logEntry.isNonInheritable() ? NON_INHERITABLE : 0));
+	}
+
+	/**
+	 * 
+	 * @return a record of the log entry, interning its author and changed paths in the given dictionary.
+	 */
+	public static MissingMergeRecord of(SVNLogEntry logEntry, MissingMergeDictionary dictionary) {
+		return new MissingMergeRecord(logEntry, dictionary);
+	}
+
+	public long getRevision() {
+		return revision;
+	}
+
+	/**
+	 * 
+	 * @return the author of the revision, or null if it has none or it was not fetched.
+	 */
+	public String getAuthor() {
+		return author < 0 ? null : dictionary.getAuthor(author);
+	}
+
+	/**
+	 * 
+	 * @return a log entry equal to the one this record was made from.
+	 */
+	public SVNLogEntry toLogEntry() {
+		SVNProperties revisionProperties = otherRevisionProperties == null ? new SVNProperties() : new SVNProperties(otherRevisionProperties);
+		if (author >= 0) {
+			revisionProperties.put(SVNRevisionProperty.AUTHOR, dictionary.getAuthor(author));
+		}
+		if (dateMicros >= 0) {
+			revisionProperties.put(SVNRevisionProperty.DATE, new SVNDate(dateMicros / 1000, (int) (dateMicros % 1000)).format());
+		}
+		if (message != null) {
+			revisionProperties.put(SVNRevisionProperty.LOG, message);
+		}
+		Map<String, SVNLogEntryPath> changedPaths = new LinkedHashMap<>();
+		for (int i = 0; i < paths.length; i++) {
+			String path = dictionary.getPath(paths[i]);
+			String copyPath = copyPaths == null || copyPaths[i] < 0 ? null : dictionary.getPath(copyPaths[i]);
+			long copyRevision = copyPath == null ? -1 : copyRevisions[i];
+			SVNNodeKind kind = pathKinds[i] < 0 ? null : KINDS[pathKinds[i]];
+			changedPaths.put(path, new SVNLogEntryPath(path, (char) pathTypes[i], copyPath, copyRevision, kind));
+		}
+		SVNLogEntry logEntry = new SVNLogEntry(changedPaths, revision, revisionProperties, (flags & HAS_CHILDREN) != 0);
+		logEntry.setSubtractiveMerge((flags & SUBTRACTIVE_MERGE) != 0);
+		logEntry.setNonInheriable((flags & NON_INHERITABLE) != 0);
+		return changedPathCount < 0 ? logEntry : TruncatedLogEntry.create(logEntry, changedPathCount);
+	}
+
+	private static int kindIndex(SVNNodeKind kind) {
+		for (int i = 0; i < KINDS.length; i++) {
+			if (KINDS[i] == kind) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,398 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.args4j.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.BasicAuthenticationManager;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.wc.SVNClientManager;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Answers missing merge queries over HTTP, so that any number of tools can share one set of results rather than each
+ * asking the server for the same eligible revisions.
+ *
+ * <pre>
+ * GET /missingMerges?source=branches/branch1&amp;target=trunk[&amp;ignoreRule=RULE...]
+ * </pre>
+ *
+ * The source and target are relative to the baseUrl. The response is a json object holding the repository UUID, the
+ * repository paths of the source and target, the revisions in which each was last changed, and the missing merges,
+ * written as in the JSON Lines report.
+ *
+ * Queries may add ignore rules of their own to those given on the command line, with 'ignoreRule' parameters. Each
+ * check runs on a thread of its own, so that a query is answered with a 504 once the 'queryTimeout' has passed, even if
+ * the server has not yet replied.
+ *
+ * Results are kept in memory, and the least recently used are dropped first. They are keyed by the repository UUID, the
+ * source and target, the ignore rules, and the revisions in which the source and target were last changed. Any commit
+ * to either, including a merge into the target, changes the key, so a cached result is never served once it could be
+ * out of date. Each query costs two info requests to find those revisions.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class MissingMergeService extends AbstractIgnoreRulesWorker {
+
+	public static final String	CONTEXT_PATH	= "/missingMerges";
+	public static final String	CACHE_HEADER	= "X-Missing-Merge-Cache";
+
+	private static final Logger	LOGGER			= LoggerFactory.getLogger(MissingMergeService.class);
+
+	@Option(name = "--user", usage = "SVN Username")
+	protected String			user;
+
+	@Option(name = "--pass", usage = "SVN Password")
+	protected String			pass;
+
+	@Option(name = "--baseUrl", usage = "Common base url of the merge sources and targets queried", required = true)
+	protected String			baseUrl;
+
+	@Option(name = "--bindAddress", usage = "Address to listen on. Defaults to the loopback address, so that only local tools can query; give 0.0.0.0 to listen on every interface.")
+	private String				bindAddress		= InetAddress.getLoopbackAddress().getHostAddress();
+
+	@Option(name = "--port", usage = "Port to listen on. 0 picks a free port.")
+	private int					port			= 8080;
+
+	@Option(name = "--threads", usage = "Number of queries to answer, and of checks to run, concurrently. Each thread uses its own SVN client.")
+	private int					threads			= 4;
+
+	@Option(name = "--cacheSize", usage = "Number of query results to keep in memory. The least recently used are dropped first.")
+	private int					cacheSize		= 1000;
+
+	@Option(name = "--queryTimeout", usage = "Number of seconds a query may spend checking for missing merges before it is answered with a 504 and the check is abandoned. 0 for no limit.")
+	private int					queryTimeout	= 300;
+
+	private SVNURL							baseSVNURL;
+	private SVNSessionPool					sessionPool;
+	private final List<SVNClientManager>	threadClientManagers	= new CopyOnWriteArrayList<>();
+	private ThreadLocal<SVNClientManager>	threadClientManager;
+	private Map<String, byte[]>				cache;
+	private final AtomicLong				cacheHits				= new AtomicLong();
+	private final AtomicLong				cacheMisses				= new AtomicLong();
+	private ExecutorService					executor;
+	private ExecutorService					checkExecutor;
+	private HttpServer						server;
+
+	public static void main(String[] args) throws Exception {
+		new MissingMergeService().start(args);
+	}
+
+	protected boolean handleArgs(String[] args) {
+		if (!super.handleArgs(args)) {
+			return false;
+		}
+
+		if (port < 0 || threads < 1 || cacheSize < 0 || queryTimeout < 0) {
+			getLogger().error("'port', 'cacheSize' and 'queryTimeout' must not be negative, and 'threads' must be at least 1.");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Start answering queries. The service keeps running, on threads of its own, until {@link #stop()} is called.
+	 *
+	 * @return false if the arguments were not valid, in which case nothing has been started.
+	 * @throws IOException
+	 *             if the port could not be listened on
+	 * @throws SVNException
+	 *             if the baseUrl is not a valid url
+	 */
+	public boolean start(String[] args) throws IOException, SVNException {
+		if (!handleArgs(args)) {
+			return false;
+		}
+
+		baseSVNURL = SVNURL.parseURIEncoded(baseUrl);
+		ISVNAuthenticationManager authenticationManager = user != null && pass != null ? BasicAuthenticationManager.newInstance(user, pass.toCharArray()) : SVNWCUtil.createDefaultAuthenticationManager();
+		sessionPool = createSessionPool(authenticationManager);
+		threadClientManager = ThreadLocal.withInitial(() -> {
+			SVNClientManager threadManager = SVNClientManager.newInstance(SVNWCUtil.createDefaultOptions(true), sessionPool);
+			threadClientManagers.add(threadManager);
+			return threadManager;
+		});
+		cache = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+				return size() > cacheSize;
+			}
+		});
+
+		server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+		server.createContext(CONTEXT_PATH, this::handle);
+		executor = Executors.newFixedThreadPool(threads);
+		checkExecutor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.start();
+		LOGGER.info("Answering missing merge queries for {} on {}:{}", baseSVNURL, bindAddress, getPort());
+		return true;
+	}
+
+	/**
+	 * Stop answering queries, and close every SVN session.
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+		checkExecutor.shutdownNow();
+		for (SVNClientManager threadManager : threadClientManagers) {
+			threadManager.dispose();
+		}
+		sessionPool.dispose();
+	}
+
+	/**
+	 *
+	 * @return the port being listened on, which is only known once started if 'port' was 0.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 *
+	 * @return the number of queries answered from the cache.
+	 */
+	public long getCacheHitCount() {
+		return cacheHits.get();
+	}
+
+	/**
+	 *
+	 * @return the number of queries which had to be checked against the server.
+	 */
+	public long getCacheMissCount() {
+		return cacheMisses.get();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Only GET is supported");
+				return;
+			}
+			Map<String, List<String>> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+			String source = getParameter(parameters, "source");
+			String target = getParameter(parameters, "target");
+			if (StringUtils.isBlank(source) || StringUtils.isBlank(target)) {
+				sendError(exchange, 400, "Both 'source' and 'target' must be given");
+				return;
+			}
+			List<String> rules = new ArrayList<>(ignoreRules);
+			rules.addAll(parameters.getOrDefault("ignoreRule", Collections.emptyList()));
+			IgnoreRulesMergeCheckerPredicate ignoreRulesPredicate;
+			try {
+				ignoreRulesPredicate = createIgnoreRules(rules);
+			} catch (IllegalArgumentException e) {
+				sendError(exchange, 400, e.getMessage());
+				return;
+			}
+
+			SVNClientManager clientManager = threadClientManager.get();
+			SVNRepository repository = clientManager.createRepository(baseSVNURL, true);
+			SVNURL mergeSource = baseSVNURL.appendPath(source, false);
+			SVNURL mergeTarget = baseSVNURL.appendPath(target, false);
+			String sourcePath = SVNUtils.getRepositoryPath(repository, mergeSource);
+			String targetPath = SVNUtils.getRepositoryPath(repository, mergeTarget);
+			SVNDirEntry sourceEntry = repository.info(sourcePath, -1);
+			SVNDirEntry targetEntry = repository.info(targetPath, -1);
+			if (sourceEntry == null || targetEntry == null) {
+				sendError(exchange, 404, String.format("%s does not exist", sourceEntry == null ? sourcePath : targetPath));
+				return;
+			}
+
+			String uuid = repository.getRepositoryUUID(true);
+			String key = String.join("|", uuid, sourcePath, targetPath, rules.toString(), Long.toString(sourceEntry.getRevision()), Long.toString(targetEntry.getRevision()));
+			byte[] body = cache.get(key);
+			boolean cached = body != null;
+			if (cached) {
+				cacheHits.incrementAndGet();
+			} else {
+				cacheMisses.incrementAndGet();
+				// Checked at HEAD, which may be newer than the key, but is never older.
+				body = check(mergeSource, mergeTarget, ignoreRulesPredicate, uuid, sourcePath, targetPath, sourceEntry.getRevision(), targetEntry.getRevision());
+				cache.put(key, body);
+			}
+			if (verbose) {
+				LOGGER.info("{} missing merges from {} to {}", cached ? "Served cached" : "Checked", sourcePath, targetPath);
+			}
+			exchange.getResponseHeaders().set(CACHE_HEADER, cached ? "HIT" : "MISS");
+			send(exchange, 200, body);
+		} catch (TimeoutException e) {
+			sendError(exchange, 504, e.getMessage());
+		} catch (SVNException e) {
+			LOGGER.error("Error checking merge information", e);
+			sendError(exchange, 500, e.getErrorMessage().getFullMessage());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Check the pair on a thread of the check executor, and wait no longer than the 'queryTimeout' for it to finish. The
+	 * check is given the same deadline, so it is abandoned rather than left running once the query has been answered.
+	 */
+	private byte[] check(SVNURL mergeSource, SVNURL mergeTarget, IgnoreRulesMergeCheckerPredicate ignoreRulesPredicate, String uuid, String sourcePath, String targetPath, long sourceRevision, long targetRevision) throws SVNException, TimeoutException {
+		CompletableFuture<byte[]> body = CompletableFuture.supplyAsync(() -> {
+			try {
+				return writeMissingMerges(threadClientManager.get(), mergeSource, mergeTarget, ignoreRulesPredicate, uuid, sourcePath, targetPath, sourceRevision, targetRevision);
+			} catch (SVNException | TimeoutException e) {
+				throw new CompletionException(e);
+			}
+		}, checkExecutor);
+		try {
+			return queryTimeout > 0 ? body.get(queryTimeout, TimeUnit.SECONDS) : body.get();
+		} catch (TimeoutException e) {
+			body.cancel(false);
+			throw new TimeoutException(String.format("Missing merge check from %s to %s did not finish within %ss", sourcePath, targetPath, queryTimeout));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.CANCELLED, "Interrupted while checking missing merges from {0} to {1}", sourcePath, targetPath);
+			throw new SVNCancelException(err);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof TimeoutException) {
+				throw (TimeoutException) e.getCause();
+			}
+			if (e.getCause() instanceof SVNException) {
+				throw (SVNException) e.getCause();
+			}
+			throw new CompletionException(e.getCause());
+		}
+	}
+
+	private byte[] writeMissingMerges(SVNClientManager clientManager, SVNURL mergeSource, SVNURL mergeTarget, IgnoreRulesMergeCheckerPredicate ignoreRulesPredicate, String uuid, String sourcePath, String targetPath, long sourceRevision, long targetRevision) throws SVNException, TimeoutException {
+		MissingMergeWorker worker = new MissingMergeWorker(mergeSource, mergeTarget, verbose, clientManager, getLogEntryValidators(ignoreRulesPredicate));
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+		String[] separator = { "\n" };
+		try {
+			out.write("{\"repositoryUUID\": " + JSONUtils.toJSONString(uuid) + ", \"mergeSource\": " + JSONUtils.toJSONString(sourcePath) + ", \"mergeTarget\": " + JSONUtils.toJSONString(targetPath));
+			out.write(", \"sourceRevision\": " + sourceRevision + ", \"targetRevision\": " + targetRevision + ", \"missingMerges\": [");
+			// Run on this thread, which is already the check's own, only using the async API for its deadline.
+			worker.getMissingMergesAsync(logEntry -> {
+				try {
+					out.write(separator[0] + "  {");
+					JSONLinesReportSink.writeLogEntry(out, logEntry);
+					out.write("}");
+				} catch (IOException e) {
+					SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.IO_ERROR, "Could not write missing merge r{0}", logEntry.getRevision());
+					throw new SVNException(err, e);
+				}
+				separator[0] = ",\n";
+			}, Runnable::run, queryTimeout * 1000L).join();
+			out.write("\n]}\n");
+			out.flush();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof TimeoutException) {
+				throw (TimeoutException) e.getCause();
+			}
+			if (e.getCause() instanceof SVNException) {
+				throw (SVNException) e.getCause();
+			}
+			throw e;
+		} catch (IOException e) {
+			// Writing to memory does not fail.
+			throw new IllegalStateException(e);
+		}
+		return body.toByteArray();
+	}
+
+	private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		send(exchange, status, ("{\"error\": " + JSONUtils.toJSONString(message) + "}\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Map<String, List<String>> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+		Map<String, List<String>> parameters = new HashMap<>();
+		if (rawQuery == null) {
+			return parameters;
+		}
+		for (String parameter : rawQuery.split("&")) {
+			int equals = parameter.indexOf('=');
+			String name = URLDecoder.decode(equals < 0 ? parameter : parameter.substring(0, equals), "UTF-8");
+			String value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), "UTF-8");
+			parameters.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+		}
+		return parameters;
+	}
+
+	private static String getParameter(Map<String, List<String>> parameters, String name) {
+		List<String> values = parameters.get(name);
+		return values == null ? null : values.get(0);
+	}
+
+	@Override
+	protected Logger getLogger() {
+		return LOGGER;
+	}
+}
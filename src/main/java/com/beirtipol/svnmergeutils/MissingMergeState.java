@@ -0,0 +1,165 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+
+/**
+ * The result of checking a single merge source/target pair, kept between runs so that the next run only has to look at
+ * what has changed since.
+ *
+ * The eligible entries only go up to the head revision of the check, which is held back by e.g. the quiet time, and
+ * later revisions are fetched by the next run. The entries are held before any log entry validators have been applied,
+ * and the validators are applied afresh each time the state is reported, so an entry dropped by e.g. an ignore rule is
+ * reported again once that rule is removed. They are held as {@link MissingMergeRecord}s in memory, and written out
+ * as log entries, and a state read back interns them in a {@link MissingMergeDictionary} of its own.
+ * The entries are trimmed as they were when checked, so a state is only reused by a check which trims them the same way.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class MissingMergeState implements Serializable {
+	private static final long					serialVersionUID	= 3L;
+
+	private final String						mergeSource;
+	private final String						mergeTarget;
+	private final long							headRevision;
+	private final String						targetMergeInfoFingerprint;
+	private final RevisionRangeSet				mergedRevisions;
+	private final boolean						discoverChangedPaths;
+	private final int							maxChangedPaths;
+	private final boolean						minimalRevisionProperties;
+	private transient List<MissingMergeRecord>	eligible;
+
+	/**
+	 *
+	 * @param discoverChangedPaths
+	 *            whether the eligible entries kept their changed paths
+	 * @param maxChangedPaths
+	 *            the most changed paths each eligible entry kept, or -1 for all of them
+	 * @param minimalRevisionProperties
+	 *            whether only the author, date and message of each eligible entry were fetched
+	 */
+	public MissingMergeState(SVNURL mergeSource, SVNURL mergeTarget, long headRevision, String targetMergeInfoFingerprint, RevisionRangeSet mergedRevisions, List<MissingMergeRecord> eligible, boolean discoverChangedPaths, int maxChangedPaths, boolean minimalRevisionProperties) {
+		this.mergeSource = mergeSource.toString();
+		this.mergeTarget = mergeTarget.toString();
+		this.headRevision = headRevision;
+		this.targetMergeInfoFingerprint = targetMergeInfoFingerprint;
+		this.mergedRevisions = mergedRevisions;
+		this.eligible = new ArrayList<>(eligible);
+		this.discoverChangedPaths = discoverChangedPaths;
+		this.maxChangedPaths = maxChangedPaths;
+		this.minimalRevisionProperties = minimalRevisionProperties;
+	}
+
+	/**
+	 *
+	 * @return true if this state was recorded for the given merge source and target, with its entries trimmed as given,
+	 *         so that they are what a check with the same options would report.
+	 */
+	public boolean isFor(SVNURL mergeSource, SVNURL mergeTarget, boolean discoverChangedPaths, int maxChangedPaths, boolean minimalRevisionProperties) {
+		return this.mergeSource.equals(mergeSource.toString()) && this.mergeTarget.equals(mergeTarget.toString()) && this.discoverChangedPaths == discoverChangedPaths && this.maxChangedPaths == maxChangedPaths && this.minimalRevisionProperties == minimalRevisionProperties;
+	}
+
+	/**
+	 *
+	 * @return the repository revision the pair was last evaluated at.
+	 */
+	public long getHeadRevision() {
+		return headRevision;
+	}
+
+	public String getTargetMergeInfoFingerprint() {
+		return targetMergeInfoFingerprint;
+	}
+
+	/**
+	 *
+	 * @return the revisions of the merge source which had been merged into the whole of the target.
+	 */
+	public RevisionRangeSet getMergedRevisions() {
+		return mergedRevisions;
+	}
+
+	/**
+	 *
+	 * @return every revision which was eligible for merging, in revision order, before validation.
+	 */
+	public List<MissingMergeRecord> getEligible() {
+		return Collections.unmodifiableList(eligible);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(eligible.size());
+		for (MissingMergeRecord record : eligible) {
+			out.writeObject(record.toLogEntry());
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int size = in.readInt();
+		eligible = new ArrayList<>(size);
+		MissingMergeDictionary dictionary = new MissingMergeDictionary();
+		for (int i = 0; i < size; i++) {
+			eligible.add(MissingMergeRecord.of((SVNLogEntry) in.readObject(), dictionary));
+		}
+	}
+
+	/**
+	 *
+	 * @return the file in the state directory which holds the state of the given merge source/target pair.
+	 */
+	public static File getStateFile(File stateDir, SVNURL mergeSource, SVNURL mergeTarget) {
+		String name = (mergeSource.getPath() + "-" + mergeTarget.getPath()).replaceAll("[^A-Za-z0-9.-]+", "_");
+		String hash = SVNUtils.sha1(mergeSource + "\n" + mergeTarget).substring(0, 8);
+		return new File(stateDir, name + "-" + hash + ".state");
+	}
+
+	/**
+	 *
+	 * @return the state held in the file, or null if there is none or it cannot be read.
+	 */
+	public static MissingMergeState load(File stateFile) {
+		return SerializedFiles.load(stateFile, MissingMergeState.class, "state");
+	}
+
+	/**
+	 * Write this state to the file, replacing it in one step.
+	 */
+	public void save(File stateFile) throws IOException {
+		SerializedFiles.save(stateFile, this);
+	}
+}
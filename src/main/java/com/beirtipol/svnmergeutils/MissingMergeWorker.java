@@ -25,20 +25,43 @@ package com.beirtipol.svnmergeutils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tmatesoft.svn.core.ISVNCanceller;
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNCancelException;
 import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNRevisionProperty;
 import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.wc.SVNClientManager;
 import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
 import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
 import org.tmatesoft.svn.core.wc2.SvnLogMergeInfo;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnRevisionRange;
 import org.tmatesoft.svn.core.wc2.SvnTarget;
 
+import com.beirtipol.svnmergeutils.MissingMergeMetrics.PairMetrics;
+
 /**
  * 
  * @author beirtipol@gmail.com
@@ -46,12 +69,22 @@ import org.tmatesoft.svn.core.wc2.SvnTarget;
  */
 public class MissingMergeWorker {
 
-	private static final Logger			LOGGER	= LoggerFactory.getLogger(MissingMergeWorker.class);
-	private SVNURL						mergeSource;
-	private SVNURL						mergeTarget;
-	private SVNClientManager			clientManager;
-	private Predicate<SVNLogEntry>[]	logEntryValidators;
-	private boolean						verbose;
+	private static final Logger				LOGGER						= LoggerFactory.getLogger(MissingMergeWorker.class);
+	private static final String[]			MINIMAL_REVISION_PROPERTIES	= { SVNRevisionProperty.AUTHOR, SVNRevisionProperty.DATE, SVNRevisionProperty.LOG };
+	private static ScheduledExecutorService	deadlineScheduler;
+	private SVNURL							mergeSource;
+	private SVNURL							mergeTarget;
+	private SVNClientManager				clientManager;
+	private Predicate<SVNLogEntry>[]		logEntryValidators;
+	private boolean							verbose;
+	private PairMetrics						metrics;
+	private long							endRevision					= -1;
+	private boolean							discoverChangedPaths		= true;
+	private int								maxChangedPaths				= -1;
+	private boolean							minimalRevisionProperties	= false;
+	private ClientSideEligibility			eligibility;
+	private boolean							verifyEligibility;
+	private ISVNCanceller					canceller					= ISVNCanceller.NULL;
 
 	@SuppressWarnings("unchecked")
 	public MissingMergeWorker(SVNURL mergeSource, SVNURL mergeTarget, boolean verbose) {
@@ -65,38 +98,467 @@ public class MissingMergeWorker {
 		this.mergeTarget = mergeTarget;
 		this.verbose = verbose;
 		if (clientManager == null) {
-			clientManager = SVNClientManager.newInstance();
+			clientManager = SVNClientManager.newInstance(SVNWCUtil.createDefaultOptions(true), SVNSessionPool.getDefault());
 		}
 		this.clientManager = clientManager;
 		this.logEntryValidators = logEntryValidators;
 	}
 
+	/**
+	 * Record the time spent waiting for the server and filtering, and the number of entries received, filtered and
+	 * reported, in the given metrics. The time spent writing the entries is left to whatever writes them, as the handler
+	 * may only hold on to them to be written later.
+	 * 
+	 * @param metrics
+	 *            may be null, in which case nothing is recorded
+	 */
+	public void setMetrics(PairMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Only consider merge source revisions up to and including the given one, e.g. the last revision committed before
+	 * the start of a quiet time window. The mergeinfo of the merge target is still read at HEAD, so merges done since
+	 * are taken into account.
+	 * 
+	 * @param endRevision
+	 *            the youngest source revision to consider, or -1 for HEAD
+	 */
+	public void setEndRevision(long endRevision) {
+		this.endRevision = endRevision;
+	}
+
+	/**
+	 * The changed paths are always fetched from the server, as both SVNKit's log-eligible operation and client side
+	 * eligibility need them to match revisions against the mergeinfo, and SVNKit ignores its own discoverChangedPaths
+	 * setting. So when this is false they are dropped from each entry as soon as it is received, which saves memory and
+	 * report size but not server time or bandwidth.
+	 * 
+	 * @param discoverChangedPaths
+	 *            whether to keep the paths changed by each entry. Defaults to true.
+	 */
+	public void setDiscoverChangedPaths(boolean discoverChangedPaths) {
+		this.discoverChangedPaths = discoverChangedPaths;
+	}
+
+	/**
+	 * Keep no more than the given number of changed paths for each entry. Entries which changed more are replaced by a
+	 * {@link TruncatedLogEntry} as soon as they are received.
+	 * 
+	 * @param maxChangedPaths
+	 *            or -1 to keep every changed path
+	 */
+	public void setMaxChangedPaths(int maxChangedPaths) {
+		this.maxChangedPaths = maxChangedPaths;
+	}
+
+	/**
+	 * 
+	 * @param minimalRevisionProperties
+	 *            whether to fetch only the author, date and message of each entry rather than all its revision
+	 *            properties
+	 */
+	public void setMinimalRevisionProperties(boolean minimalRevisionProperties) {
+		this.minimalRevisionProperties = minimalRevisionProperties;
+	}
+
+	/**
+	 * Work out the eligible revisions locally, from the target's mergeinfo and the source's log, rather than having the
+	 * server run log-eligible for each pair. Anything fetched is shared with every other worker given the same
+	 * eligibility.
+	 * 
+	 * @param eligibility
+	 *            or null to have the server work out the eligible revisions
+	 * @param verify
+	 *            whether to also have the server work them out, report its result, and log any difference between the
+	 *            two
+	 */
+	public void setClientSideEligibility(ClientSideEligibility eligibility, boolean verify) {
+		this.eligibility = eligibility;
+		this.verifyEligibility = verify;
+	}
+
+	/**
+	 * 
+	 * @param canceller
+	 *            checked as each entry is received and by the SVN operations run for each check, so that throwing an
+	 *            {@link SVNCancelException} from it aborts the check. Defaults to {@link ISVNCanceller#NULL}.
+	 */
+	public void setCanceller(ISVNCanceller canceller) {
+		this.canceller = canceller == null ? ISVNCanceller.NULL : canceller;
+	}
+
 	public List<SVNLogEntry> getMissingMerges() throws SVNException {
 		List<SVNLogEntry> result = new ArrayList<>();
+		getMissingMerges(result::add);
+		return result;
+	}
 
-		SvnLogMergeInfo mergeInfo = clientManager.getDiffClient().getOperationsFactory().createLogMergeInfo();
-		mergeInfo.addTarget(SvnTarget.fromURL(mergeTarget, SVNRevision.HEAD));
-		mergeInfo.setSource(SvnTarget.fromURL(mergeSource, SVNRevision.HEAD));
-		mergeInfo.setDiscoverChangedPaths(true);
-		mergeInfo.setRevisionProperties(null);
-		mergeInfo.setFindMerged(false);
-		mergeInfo.setDepth(SVNDepth.INFINITY);
-		mergeInfo.setReceiver(new ISvnObjectReceiver<SVNLogEntry>() {
-			public void receive(SvnTarget target, SVNLogEntry logEntry) throws SVNException {
-				for (Predicate<SVNLogEntry> validator : logEntryValidators) {
-					if (!validator.test(logEntry)) {
-						return;
+	/**
+	 * Pass each missing merge to the handler as soon as it has been received from the server and has passed the log
+	 * entry validators. Nothing is retained by the worker, so memory use does not grow with the number of entries.
+	 * 
+	 * @param handler
+	 * @throws SVNException
+	 */
+	public void getMissingMerges(ISVNLogEntryHandler handler) throws SVNException {
+		runLogMergeInfo(SVNRevision.HEAD, -1, canceller, logEntry -> report(logEntry, handler));
+	}
+
+	/**
+	 * Check this pair on the given executor, without blocking the calling thread.
+	 * 
+	 * @param executor
+	 * @param timeoutMillis
+	 *            how long the check may take from the time of this call, or 0 for no deadline
+	 * @return a future of the missing merges, as returned by {@link #getMissingMerges()}
+	 * @see #getMissingMergesAsync(ISVNLogEntryHandler, Executor, long)
+	 */
+	public CompletableFuture<List<SVNLogEntry>> getMissingMergesAsync(Executor executor, long timeoutMillis) {
+		List<SVNLogEntry> result = new ArrayList<>();
+		return runAsync(result::add, () -> result, executor, timeoutMillis);
+	}
+
+	/**
+	 * Check this pair on the given executor, passing each missing merge to the handler from the executor's thread.
+	 * 
+	 * Cancelling the returned future, or passing the deadline, completes it as soon as any call to the handler under way
+	 * has returned, and aborts the check the next time it checks for cancellation, e.g. as the next entry is received.
+	 * The handler is never called once the future has completed. On passing the deadline the future completes with a
+	 * {@link TimeoutException}.
+	 * 
+	 * A worker should only run one check at a time.
+	 * 
+	 * @param handler
+	 * @param executor
+	 * @param timeoutMillis
+	 *            how long the check may take from the time of this call, or 0 for no deadline
+	 * @return a future completed once every missing merge has been passed to the handler
+	 */
+	public CompletableFuture<Void> getMissingMergesAsync(ISVNLogEntryHandler handler, Executor executor, long timeoutMillis) {
+		return runAsync(handler, () -> null, executor, timeoutMillis);
+	}
+
+	private <T> CompletableFuture<T> runAsync(ISVNLogEntryHandler handler, Supplier<T> result, Executor executor, long timeoutMillis) {
+		GuardedFuture<T> future = new GuardedFuture<>();
+		if (timeoutMillis > 0) {
+			ScheduledFuture<?> deadline = getDeadlineScheduler().schedule(() -> {
+				future.completeExceptionally(new TimeoutException(String.format("Missing merge check from %s to %s did not finish within %sms", mergeSource, mergeTarget, timeoutMillis)));
+			}, timeoutMillis, TimeUnit.MILLISECONDS);
+			future.whenComplete((value, e) -> deadline.cancel(false));
+		}
+		ISVNCanceller callerCanceller = canceller;
+		ISVNCanceller callCanceller = () -> {
+			if (future.isCompleting()) {
+				SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.CANCELLED, "Missing merge check from {0} to {1} was cancelled or timed out", mergeSource, mergeTarget);
+				throw new SVNCancelException(err);
+			}
+			callerCanceller.checkCancelled();
+		};
+		ISVNLogEntryHandler guardedHandler = logEntry -> {
+			// The future is only completed under its own lock, so no entry can reach the handler once it has completed.
+			synchronized (future) {
+				callCanceller.checkCancelled();
+				report(logEntry, handler);
+			}
+		};
+
+		try {
+			executor.execute(() -> {
+				if (future.isDone()) {
+					return;
+				}
+				SVNSessionPool sessionPool = clientManager.getRepositoryPool() instanceof SVNSessionPool ? (SVNSessionPool) clientManager.getRepositoryPool() : null;
+				Set<String> heldServers = sessionPool != null ? sessionPool.getHeldServers() : null;
+				try {
+					runLogMergeInfo(SVNRevision.HEAD, -1, callCanceller, guardedHandler);
+					future.complete(result.get());
+				} catch (Throwable e) {
+					// A check aborted because the future is being cancelled or timed out leaves it to complete as such.
+					if (!future.isCompleting()) {
+						future.completeExceptionally(e);
+					}
+				} finally {
+					if (sessionPool != null) {
+						sessionPool.releaseSessions(heldServers);
 					}
 				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * A future which is only ever completed, by whatever means, while holding its own lock. It is marked as completing
+	 * before the lock is taken, so that a check holding the lock between entries cannot hold off its completion.
+	 */
+	private static class GuardedFuture<T> extends CompletableFuture<T> {
+		private volatile boolean	completing;
+
+		boolean isCompleting() {
+			return completing || isDone();
+		}
+
+		@Override
+		public boolean complete(T value) {
+			completing = true;
+			synchronized (this) {
+				return super.complete(value);
+			}
+		}
+
+		@Override
+		public boolean completeExceptionally(Throwable ex) {
+			completing = true;
+			synchronized (this) {
+				return super.completeExceptionally(ex);
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			completing = true;
+			synchronized (this) {
+				return super.cancel(mayInterruptIfRunning);
+			}
+		}
+	}
+
+	private static synchronized ScheduledExecutorService getDeadlineScheduler() {
+		if (deadlineScheduler == null) {
+			deadlineScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "missing-merge-deadlines");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return deadlineScheduler;
+	}
 
-				if (verbose) {
-					LOGGER.info("Missing Merge: r{}: {}: {}: {}", logEntry.getRevision(), logEntry.getAuthor(), logEntry.getMessage(), logEntry.getDate());
+	/**
+	 * Bring the result of a previous check of this pair up to date, and pass each missing merge to the handler.
+	 * 
+	 * Only source revisions committed since the previous check are requested from the server. If the target's mergeinfo
+	 * has changed in the meantime, previously eligible revisions which have since been merged are dropped. If the state
+	 * cannot be reused, e.g. because a merge has been reverse-merged, the full eligible history is fetched instead.
+	 * 
+	 * @param handler
+	 * @param previous
+	 *            the state returned by the previous check, or null
+	 * @return the state to pass to the next check
+	 * @throws SVNException
+	 */
+	public MissingMergeState getMissingMerges(ISVNLogEntryHandler handler, MissingMergeState previous) throws SVNException {
+		SVNRepository repository = clientManager.createRepository(mergeTarget, true);
+		long headRevision = repository.getLatestRevision();
+		String targetPath = SVNUtils.getRepositoryPath(repository, mergeTarget);
+		String sourcePath = SVNUtils.getRepositoryPath(repository, mergeSource);
+		SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog = SVNUtils.getMergeInfoCatalog(repository, targetPath, headRevision);
+		String fingerprint = SVNUtils.getMergeInfoFingerprint(catalog, targetPath, sourcePath);
+		RevisionRangeSet mergedRevisions = SVNUtils.getMergedRevisions(catalog, targetPath, sourcePath);
+		long checkedRevision = endRevision >= 0 ? Math.min(endRevision, headRevision) : headRevision;
+
+		// A dictionary per check, so that the strings of revisions which have since been merged are not kept forever.
+		MissingMergeDictionary dictionary = new MissingMergeDictionary();
+		List<MissingMergeRecord> eligible = new ArrayList<>();
+		ISVNLogEntryHandler receiver = logEntry -> eligible.add(MissingMergeRecord.of(logEntry, dictionary));
+		if (previous != null && previous.isFor(mergeSource, mergeTarget, discoverChangedPaths, maxChangedPaths, minimalRevisionProperties) && previous.getHeadRevision() <= checkedRevision && previous.getMergedRevisions().difference(mergedRevisions).isEmpty()) {
+			boolean mergeInfoChanged = !fingerprint.equals(previous.getTargetMergeInfoFingerprint());
+			for (MissingMergeRecord record : previous.getEligible()) {
+				if (!mergeInfoChanged || !mergedRevisions.contains(record.getRevision())) {
+					eligible.add(MissingMergeRecord.of(record.toLogEntry(), dictionary));
 				}
-				result.add(logEntry);
+			}
+			if (checkedRevision > previous.getHeadRevision()) {
+				runLogMergeInfo(SVNRevision.create(headRevision), previous.getHeadRevision() + 1, canceller, receiver);
+			}
+			if (verbose) {
+				LOGGER.info("Updated missing merges from {} to {} between r{} and r{}", mergeSource, mergeTarget, previous.getHeadRevision(), checkedRevision);
+			}
+		} else {
+			runLogMergeInfo(SVNRevision.create(headRevision), -1, canceller, receiver);
+		}
+
+		MissingMergeState state = new MissingMergeState(mergeSource, mergeTarget, checkedRevision, fingerprint, mergedRevisions, eligible, discoverChangedPaths, maxChangedPaths, minimalRevisionProperties);
+		reportMissingMerges(state, handler);
+		return state;
+	}
+
+	/**
+	 * Pass each missing merge held in the result of a previous check to the handler, without asking the server for
+	 * anything. The log entry validators are applied afresh.
+	 * 
+	 * @param state
+	 *            the state returned by a previous check of this pair
+	 * @param handler
+	 * @throws SVNException
+	 */
+	public void reportMissingMerges(MissingMergeState state, ISVNLogEntryHandler handler) throws SVNException {
+		for (MissingMergeRecord record : state.getEligible()) {
+			report(record.toLogEntry(), handler);
+		}
+	}
+
+	private void report(SVNLogEntry logEntry, ISVNLogEntryHandler handler) throws SVNException {
+		if (metrics == null) {
+			if (isValid(logEntry)) {
+				handler.handleLogEntry(logEntry);
+			}
+			return;
+		}
+		long start = System.nanoTime();
+		boolean valid = isValid(logEntry);
+		metrics.addPhaseTime(MissingMergeMetrics.PHASE_FILTER, System.nanoTime() - start);
+		if (valid) {
+			handler.handleLogEntry(logEntry);
+			metrics.entryReported();
+		}
+	}
+
+	/**
+	 * Find the eligible revisions for this pair, either with the server-side log-eligible operation or, if one has been
+	 * given, with the {@link ClientSideEligibility}.
+	 * 
+	 * @param pegRevision
+	 *            revision of both the merge source and target
+	 * @param startRevision
+	 *            lowest source revision to consider, or -1 for the full history of the source
+	 * @param canceller
+	 *            checked before each entry is passed to the receiver, and by the operations run to find them
+	 * @param receiver
+	 * @throws SVNException
+	 */
+	private void runLogMergeInfo(SVNRevision pegRevision, long startRevision, ISVNCanceller canceller, ISVNLogEntryHandler receiver) throws SVNException {
+		if (endRevision >= 0 && startRevision > endRevision) {
+			return;
+		}
+		// Time spent passing entries on is recorded by the receiver's own phases, so is taken out of the server's.
+		long[] receiverNanos = new long[1];
+		ISVNLogEntryHandler timedReceiver = logEntry -> {
+			canceller.checkCancelled();
+			long start = System.nanoTime();
+			if (metrics != null) {
+				metrics.entryReceived();
+			}
+			receiver.handleLogEntry(trimChangedPaths(logEntry));
+			receiverNanos[0] += System.nanoTime() - start;
+		};
+
+		long start = System.nanoTime();
+		if (eligibility == null) {
+			runServerSideLogMergeInfo(pegRevision, startRevision, canceller, timedReceiver);
+		} else if (!verifyEligibility) {
+			runClientSideEligibility(pegRevision, startRevision, canceller, timedReceiver);
+		} else {
+			List<SVNLogEntry> serverEligible = new ArrayList<>();
+			List<SVNLogEntry> clientEligible = new ArrayList<>();
+			runServerSideLogMergeInfo(pegRevision, startRevision, canceller, serverEligible::add);
+			runClientSideEligibility(pegRevision, startRevision, canceller, clientEligible::add);
+			List<Long> serverRevisions = getRevisions(serverEligible);
+			List<Long> clientRevisions = getRevisions(clientEligible);
+			if (!serverRevisions.equals(clientRevisions)) {
+				eligibility.recordMismatch();
+				LOGGER.error("Client-side eligibility differs from the server for {} to {}. Server: {}, client: {}", mergeSource, mergeTarget, serverRevisions, clientRevisions);
+			}
+			for (SVNLogEntry logEntry : serverEligible) {
+				timedReceiver.handleLogEntry(logEntry);
+			}
+		}
+		if (metrics != null) {
+			metrics.addPhaseTime(MissingMergeMetrics.PHASE_LOG_MERGEINFO, System.nanoTime() - start - receiverNanos[0]);
+		}
+	}
+
+	private static List<Long> getRevisions(List<SVNLogEntry> logEntries) {
+		List<Long> revisions = new ArrayList<>(logEntries.size());
+		for (SVNLogEntry logEntry : logEntries) {
+			revisions.add(logEntry.getRevision());
+		}
+		return revisions;
+	}
+
+	private void runClientSideEligibility(SVNRevision pegRevision, long startRevision, ISVNCanceller canceller, ISVNLogEntryHandler receiver) throws SVNException {
+		SVNRepository repository = clientManager.createRepository(mergeTarget, true);
+		ISVNCanceller sessionCanceller = repository.getCanceller();
+		repository.setCanceller(canceller);
+		try {
+			long pegRevisionNumber = pegRevision.getNumber() >= 0 ? pegRevision.getNumber() : repository.getLatestRevision();
+			String sourcePath = SVNUtils.getRepositoryPath(repository, mergeSource);
+			String targetPath = SVNUtils.getRepositoryPath(repository, mergeTarget);
+			eligibility.getEligible(repository, sourcePath, targetPath, pegRevisionNumber, startRevision, endRevision, minimalRevisionProperties ? MINIMAL_REVISION_PROPERTIES : null, receiver);
+		} finally {
+			repository.setCanceller(sessionCanceller);
+		}
+	}
+
+	private void runServerSideLogMergeInfo(SVNRevision pegRevision, long startRevision, ISVNCanceller canceller, ISVNLogEntryHandler receiver) throws SVNException {
+		SvnOperationFactory operationFactory = clientManager.getDiffClient().getOperationsFactory();
+		if (canceller == ISVNCanceller.NULL) {
+			runServerSideLogMergeInfo(operationFactory, pegRevision, startRevision, receiver);
+			return;
+		}
+		// The client manager's factory may be shared with other checks, so the canceller is given a factory of its own
+		// which shares its sessions.
+		SvnOperationFactory cancellableFactory = new SvnOperationFactory();
+		cancellableFactory.setAuthenticationManager(operationFactory.getAuthenticationManager());
+		cancellableFactory.setOptions(operationFactory.getOptions());
+		cancellableFactory.setRepositoryPool(operationFactory.getRepositoryPool());
+		cancellableFactory.setAutoDisposeRepositoryPool(false);
+		cancellableFactory.setCanceller(canceller);
+		try {
+			runServerSideLogMergeInfo(cancellableFactory, pegRevision, startRevision, receiver);
+		} finally {
+			cancellableFactory.dispose();
+		}
+	}
+
+	private void runServerSideLogMergeInfo(SvnOperationFactory operationFactory, SVNRevision pegRevision, long startRevision, ISVNLogEntryHandler receiver) throws SVNException {
+		SvnLogMergeInfo mergeInfo = operationFactory.createLogMergeInfo();
+		mergeInfo.addTarget(SvnTarget.fromURL(mergeTarget, pegRevision));
+		mergeInfo.setSource(SvnTarget.fromURL(mergeSource, pegRevision));
+		if (startRevision > 0 || endRevision >= 0) {
+			// Bounding the range on the server means entries in the quiet time window are never evaluated or sent.
+			SVNRevision rangeStart = SVNRevision.create(Math.max(startRevision, 0));
+			SVNRevision rangeEnd = endRevision >= 0 ? SVNRevision.create(endRevision) : pegRevision;
+			mergeInfo.addRevisionRange(SvnRevisionRange.create(rangeStart, rangeEnd));
+		}
+		mergeInfo.setRevisionProperties(minimalRevisionProperties ? MINIMAL_REVISION_PROPERTIES : null);
+		mergeInfo.setFindMerged(false);
+		mergeInfo.setDepth(SVNDepth.INFINITY);
+		mergeInfo.setReceiver(new ISvnObjectReceiver<SVNLogEntry>() {
+			public void receive(SvnTarget target, SVNLogEntry logEntry) throws SVNException {
+				receiver.handleLogEntry(logEntry);
 			}
 		});
 
 		mergeInfo.run();
-		return result;
+	}
+
+	private SVNLogEntry trimChangedPaths(SVNLogEntry logEntry) {
+		if (!discoverChangedPaths && !logEntry.getChangedPaths().isEmpty()) {
+			SVNLogEntry trimmed = new SVNLogEntry(null, logEntry.getRevision(), logEntry.getRevisionProperties(), logEntry.hasChildren());
+			trimmed.setSubtractiveMerge(logEntry.isSubtractiveMerge());
+			trimmed.setNonInheriable(logEntry.isNonInheritable());
+			return trimmed;
+		}
+		return maxChangedPaths >= 0 ? TruncatedLogEntry.truncate(logEntry, maxChangedPaths) : logEntry;
+	}
+
+	private boolean isValid(SVNLogEntry logEntry) {
+		for (Predicate<SVNLogEntry> validator : logEntryValidators) {
+			if (!validator.test(logEntry)) {
+				if (metrics != null) {
+					metrics.entryFiltered(validator.getClass().getSimpleName());
+				}
+				return false;
+			}
+		}
+
+		if (verbose) {
+			LOGGER.info("Missing Merge: r{}: {}: {}: {}", logEntry.getRevision(), logEntry.getAuthor(), logEntry.getMessage(), logEntry.getDate());
+		}
+		return true;
 	}
 }
@@ -0,0 +1,192 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * Lets the missing merge checks for several merge source/target pairs run concurrently while their log entries still
+ * reach the report in pair order.
+ *
+ * Entries for the pair at the head of the queue are passed straight through to that pair's handler as they arrive.
+ * Entries for any later pair are held only until every pair ahead of it has completed, at which point they are flushed
+ * and the rest of that pair streams through too. When the pairs are run one at a time nothing is ever buffered. Held
+ * entries are kept as {@link MissingMergeRecord}s rather than as log entries.
+ *
+ * So that a slow pair at the head cannot leave every later pair held in memory, a pair may only start once it is
+ * within a given number of pairs of the head. See {@link #awaitTurn(int)}.
+ *
+ * If any pair fails, the dispatcher is {@link #abort(Throwable) aborted}: held entries are dropped, and every pair still
+ * waiting for its turn or reporting entries is cancelled, with the failure as the cause, so that no check is left waiting for a head which will never move.
+ *
+ * Pair handlers are opened in pair order, from whichever thread moves the head of the queue, and are never called
+ * concurrently.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class OrderedLogEntryDispatcher {
+
+	/**
+	 * Opens the handler which writes the entries for a single pair. Called once per pair, in pair order.
+	 */
+	public interface PairHandlerFactory {
+		ISVNLogEntryHandler open(int pairIndex) throws SVNException;
+	}
+
+	private final Object					lock		= new Object();
+	private final PairHandlerFactory		factory;
+	private final List<Slot>				slots;
+	private final int						maxPairsAhead;
+	private final MissingMergeDictionary	dictionary	= new MissingMergeDictionary();
+	private int								head		= 0;
+	private boolean							aborted;
+	private Throwable						abortCause;
+
+	/**
+	 * 
+	 * @param numberOfPairs
+	 * @param maxPairsAhead
+	 *            how many pairs after the head may be checked, and so hold entries, at once
+	 * @param factory
+	 * @throws SVNException
+	 */
+	public OrderedLogEntryDispatcher(int numberOfPairs, int maxPairsAhead, PairHandlerFactory factory) throws SVNException {
+		this.factory = factory;
+		this.maxPairsAhead = maxPairsAhead;
+		this.slots = new ArrayList<>(numberOfPairs);
+		for (int i = 0; i < numberOfPairs; i++) {
+			slots.add(new Slot());
+		}
+		if (numberOfPairs > 0) {
+			slots.get(0).delegate = factory.open(0);
+		}
+	}
+
+	/**
+	 *
+	 * @return the handler the {@link MissingMergeWorker} for the given pair should report its entries to.
+	 */
+	public ISVNLogEntryHandler handlerFor(int pairIndex) {
+		Slot slot = slots.get(pairIndex);
+		return logEntry -> {
+			synchronized (lock) {
+				checkNotAborted();
+				if (slot.delegate != null) {
+					slot.delegate.handleLogEntry(logEntry);
+				} else {
+					slot.buffer.add(MissingMergeRecord.of(logEntry, dictionary));
+				}
+			}
+		};
+	}
+
+	/**
+	 * Wait until the given pair is no more than maxPairsAhead pairs after the head, i.e. until enough of the pairs ahead
+	 * of it have completed. Pairs must be started in pair order for this not to wait forever.
+	 * 
+	 * @throws InterruptedException
+	 * @throws SVNCancelException
+	 *             if the dispatcher is aborted before or while waiting
+	 */
+	public void awaitTurn(int pairIndex) throws InterruptedException, SVNCancelException {
+		synchronized (lock) {
+			while (!aborted && pairIndex > head + maxPairsAhead) {
+				lock.wait();
+			}
+			checkNotAborted();
+		}
+	}
+
+	/**
+	 * Give up on the report, e.g. because a pair has failed. Held entries are dropped, pairs waiting for their turn are
+	 * woken, and any further entries or waits are cancelled. Completing a pair afterwards does nothing.
+	 * 
+	 * @param cause
+	 *            the failure the report was given up for, which becomes the cause of each cancellation. Only the first
+	 *            cause given is kept.
+	 */
+	public void abort(Throwable cause) {
+		synchronized (lock) {
+			if (!aborted) {
+				aborted = true;
+				abortCause = cause;
+			}
+			for (Slot slot : slots) {
+				slot.buffer = null;
+			}
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Mark the given pair as having reported all of its entries, handing the head of the queue on to the next pair if it
+	 * was the one being written. The dispatcher is aborted if the entries held for the next pair cannot be written.
+	 */
+	public void complete(int pairIndex) throws SVNException {
+		synchronized (lock) {
+			if (aborted) {
+				return;
+			}
+			slots.get(pairIndex).completed = true;
+			try {
+				while (head < slots.size() && slots.get(head).completed) {
+					head++;
+					if (head < slots.size()) {
+						Slot next = slots.get(head);
+						next.delegate = factory.open(head);
+						for (MissingMergeRecord record : next.buffer) {
+							next.delegate.handleLogEntry(record.toLogEntry());
+						}
+						next.buffer = null;
+					}
+				}
+			} catch (SVNException | RuntimeException e) {
+				abort(e);
+				throw e;
+			}
+			lock.notifyAll();
+		}
+	}
+
+	private void checkNotAborted() throws SVNCancelException {
+		if (aborted) {
+			SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.CANCELLED, "The missing merge report was abandoned after another pair failed");
+			throw new SVNCancelException(err, abortCause);
+		}
+	}
+
+	private static class Slot {
+		private ISVNLogEntryHandler			delegate;
+		private List<MissingMergeRecord>	buffer	= new ArrayList<>();
+		private boolean						completed;
+	}
+}
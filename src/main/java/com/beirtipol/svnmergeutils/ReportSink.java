@@ -0,0 +1,56 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.IOException;
+
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * Writes the missing merge report in a single format. Pairs are opened one at a time, in pair order, and each log
+ * entry is written as soon as it is handled rather than once the report is complete.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public interface ReportSink {
+
+	/**
+	 * 
+	 * @param mergeSourcePath
+	 *            merge source of the pair, relative to the base url
+	 * @param mergeTargetPath
+	 *            merge target of the pair, relative to the base url
+	 * @return the handler which writes the missing merges of the pair.
+	 */
+	ISVNLogEntryHandler openPair(String mergeSourcePath, String mergeTargetPath) throws SVNException;
+
+	/**
+	 * Complete the report once every pair has been written. The stream the report is written to is left open.
+	 * 
+	 * @return true if at least one log entry was written.
+	 */
+	boolean finish() throws SVNException, IOException;
+}
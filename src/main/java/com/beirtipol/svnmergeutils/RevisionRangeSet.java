@@ -0,0 +1,464 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * An immutable set of revisions, held as sorted, disjoint ranges of primitive longs rather than as individual
+ * revisions. Memory use and the cost of every operation grow with the number of ranges, not the number of revisions, so
+ * a mergeinfo line such as '/branches/rel:1-480000' costs the same as '/branches/rel:5'.
+ *
+ * Ranges may be marked as non-inheritable, which is written as a trailing '*' in svn:mergeinfo. A revision is never
+ * both inheritable and non-inheritable; when sets are combined, inheritable wins.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public final class RevisionRangeSet implements Serializable {
+
+	private static final long				serialVersionUID	= 1L;
+
+	public static final RevisionRangeSet	EMPTY			= new RevisionRangeSet(new long[0], new long[0]);
+
+	private static final long[]				NO_RANGES		= new long[0];
+
+	/**
+	 * Inheritable ranges as [start0, end0, start1, end1, ...], inclusive, sorted and coalesced.
+	 */
+	private final long[]					inheritable;
+
+	/**
+	 * Non-inheritable ranges in the same layout as {@link #inheritable}. Never overlaps an inheritable range.
+	 */
+	private final long[]					nonInheritable;
+
+	private RevisionRangeSet(long[] inheritable, long[] nonInheritable) {
+		this.inheritable = inheritable;
+		this.nonInheritable = nonInheritable;
+	}
+
+	/**
+	 *
+	 * @return a set containing each of the given revisions.
+	 */
+	public static RevisionRangeSet of(long... revisions) {
+		Builder builder = new Builder();
+		for (long revision : revisions) {
+			builder.add(revision, revision, false);
+		}
+		return builder.build();
+	}
+
+	/**
+	 *
+	 * @return a set containing every revision from start to end, inclusive.
+	 */
+	public static RevisionRangeSet range(long start, long end) {
+		return new Builder().add(start, end, false).build();
+	}
+
+	public boolean isEmpty() {
+		return inheritable.length == 0 && nonInheritable.length == 0;
+	}
+
+	/**
+	 *
+	 * @return the number of revisions in this set.
+	 */
+	public long size() {
+		return count(inheritable) + count(nonInheritable);
+	}
+
+	/**
+	 *
+	 * @return the number of ranges this set is stored as.
+	 */
+	public int rangeCount() {
+		return (inheritable.length + nonInheritable.length) / 2;
+	}
+
+	public boolean contains(long revision) {
+		return contains(inheritable, revision) || contains(nonInheritable, revision);
+	}
+
+	/**
+	 *
+	 * @return true if the revision is in this set and has been marked as non-inheritable.
+	 */
+	public boolean isNonInheritable(long revision) {
+		return contains(nonInheritable, revision);
+	}
+
+	public boolean hasNonInheritable() {
+		return nonInheritable.length > 0;
+	}
+
+	/**
+	 *
+	 * @return the lowest revision in this set, or -1 if it is empty.
+	 */
+	public long first() {
+		if (isEmpty()) {
+			return -1;
+		}
+		if (inheritable.length == 0) {
+			return nonInheritable[0];
+		}
+		if (nonInheritable.length == 0) {
+			return inheritable[0];
+		}
+		return Math.min(inheritable[0], nonInheritable[0]);
+	}
+
+	/**
+	 *
+	 * @return the highest revision in this set, or -1 if it is empty.
+	 */
+	public long last() {
+		long last = -1;
+		if (inheritable.length > 0) {
+			last = inheritable[inheritable.length - 1];
+		}
+		if (nonInheritable.length > 0) {
+			last = Math.max(last, nonInheritable[nonInheritable.length - 1]);
+		}
+		return last;
+	}
+
+	public RevisionRangeSet union(RevisionRangeSet other) {
+		if (other.isEmpty()) {
+			return this;
+		}
+		if (isEmpty()) {
+			return other;
+		}
+		long[] unionInheritable = union(inheritable, other.inheritable);
+		long[] unionNonInheritable = difference(union(nonInheritable, other.nonInheritable), unionInheritable);
+		return new RevisionRangeSet(unionInheritable, unionNonInheritable);
+	}
+
+	/**
+	 *
+	 * @return the revisions of this set which are not in the other set. Inheritability is taken from this set.
+	 */
+	public RevisionRangeSet difference(RevisionRangeSet other) {
+		if (other.isEmpty() || isEmpty()) {
+			return this;
+		}
+		long[] otherAll = other.allRanges();
+		return new RevisionRangeSet(difference(inheritable, otherAll), difference(nonInheritable, otherAll));
+	}
+
+	/**
+	 *
+	 * @return the revisions of this set which are also in the other set. Inheritability is taken from this set.
+	 */
+	public RevisionRangeSet intersection(RevisionRangeSet other) {
+		if (isEmpty()) {
+			return this;
+		}
+		if (other.isEmpty()) {
+			return EMPTY;
+		}
+		return difference(difference(other));
+	}
+
+	/**
+	 *
+	 * @return this set with every range marked as inheritable.
+	 */
+	public RevisionRangeSet toInheritable() {
+		if (nonInheritable.length == 0) {
+			return this;
+		}
+		return new RevisionRangeSet(allRanges(), NO_RANGES);
+	}
+
+	/**
+	 *
+	 * @return this set with its non-inheritable ranges removed.
+	 */
+	public RevisionRangeSet withoutNonInheritable() {
+		if (nonInheritable.length == 0) {
+			return this;
+		}
+		return inheritable.length == 0 ? EMPTY : new RevisionRangeSet(inheritable, NO_RANGES);
+	}
+
+	/**
+	 * Pass each revision in this set, in ascending order, to the consumer.
+	 */
+	public void forEach(LongConsumer consumer) {
+		long[] all = allRanges();
+		for (int i = 0; i < all.length; i += 2) {
+			for (long revision = all[i]; revision <= all[i + 1]; revision++) {
+				consumer.accept(revision);
+			}
+		}
+	}
+
+	/**
+	 * Write this set in svn:mergeinfo form, e.g. '1-5,7,9-12*'.
+	 */
+	public StringBuilder appendTo(StringBuilder sb) {
+		int i = 0;
+		int n = 0;
+		boolean first = true;
+		while (i < inheritable.length || n < nonInheritable.length) {
+			boolean takeInheritable = n >= nonInheritable.length || (i < inheritable.length && inheritable[i] < nonInheritable[n]);
+			long[] ranges = takeInheritable ? inheritable : nonInheritable;
+			int index = takeInheritable ? i : n;
+			if (!first) {
+				sb.append(',');
+			}
+			first = false;
+			sb.append(ranges[index]);
+			if (ranges[index + 1] != ranges[index]) {
+				sb.append('-').append(ranges[index + 1]);
+			}
+			if (!takeInheritable) {
+				sb.append('*');
+				n += 2;
+			} else {
+				i += 2;
+			}
+		}
+		return sb;
+	}
+
+	@Override
+	public String toString() {
+		return appendTo(new StringBuilder()).toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof RevisionRangeSet)) {
+			return false;
+		}
+		RevisionRangeSet other = (RevisionRangeSet) obj;
+		return Arrays.equals(inheritable, other.inheritable) && Arrays.equals(nonInheritable, other.nonInheritable);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(inheritable) + Arrays.hashCode(nonInheritable);
+	}
+
+	private long[] allRanges() {
+		if (nonInheritable.length == 0) {
+			return inheritable;
+		}
+		if (inheritable.length == 0) {
+			return nonInheritable;
+		}
+		return union(inheritable, nonInheritable);
+	}
+
+	private static long count(long[] ranges) {
+		long count = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			count += ranges[i + 1] - ranges[i] + 1;
+		}
+		return count;
+	}
+
+	private static boolean contains(long[] ranges, long revision) {
+		int low = 0;
+		int high = ranges.length / 2 - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (ranges[mid * 2 + 1] < revision) {
+				low = mid + 1;
+			} else if (ranges[mid * 2] > revision) {
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long[] union(long[] a, long[] b) {
+		if (a.length == 0) {
+			return b;
+		}
+		if (b.length == 0) {
+			return a;
+		}
+		long[] result = new long[a.length + b.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length || j < b.length) {
+			long start;
+			long end;
+			if (j >= b.length || (i < a.length && a[i] <= b[j])) {
+				start = a[i];
+				end = a[i + 1];
+				i += 2;
+			} else {
+				start = b[j];
+				end = b[j + 1];
+				j += 2;
+			}
+			if (size > 0 && start <= result[size - 1] + 1) {
+				result[size - 1] = Math.max(result[size - 1], end);
+			} else {
+				result[size++] = start;
+				result[size++] = end;
+			}
+		}
+		return trim(result, size);
+	}
+
+	private static long[] difference(long[] a, long[] b) {
+		if (a.length == 0 || b.length == 0) {
+			return a;
+		}
+		long[] result = new long[a.length + b.length];
+		int size = 0;
+		int j = 0;
+		for (int i = 0; i < a.length; i += 2) {
+			long start = a[i];
+			long end = a[i + 1];
+			while (j < b.length && b[j + 1] < start) {
+				j += 2;
+			}
+			int k = j;
+			while (start <= end && k < b.length && b[k] <= end) {
+				if (b[k] > start) {
+					result[size++] = start;
+					result[size++] = b[k] - 1;
+				}
+				start = Math.max(start, b[k + 1] + 1);
+				k += 2;
+			}
+			if (start <= end) {
+				result[size++] = start;
+				result[size++] = end;
+			}
+		}
+		return trim(result, size);
+	}
+
+	private static long[] trim(long[] ranges, int size) {
+		if (size == 0) {
+			return NO_RANGES;
+		}
+		return size == ranges.length ? ranges : Arrays.copyOf(ranges, size);
+	}
+
+	/**
+	 * Accumulates ranges in any order, and coalesces them into a {@link RevisionRangeSet}.
+	 */
+	public static final class Builder {
+		private long[]	inheritable		= new long[8];
+		private int		inheritableSize;
+		private long[]	nonInheritable	= NO_RANGES;
+		private int		nonInheritableSize;
+
+		public Builder add(long start, long end, boolean nonInheritableRange) {
+			if (start > end) {
+				throw new IllegalArgumentException(String.format("Invalid revision range %s-%s", start, end));
+			}
+			if (nonInheritableRange) {
+				if (nonInheritableSize == nonInheritable.length) {
+					nonInheritable = Arrays.copyOf(nonInheritable, Math.max(8, nonInheritableSize * 2));
+				}
+				nonInheritable[nonInheritableSize++] = start;
+				nonInheritable[nonInheritableSize++] = end;
+			} else {
+				if (inheritableSize == inheritable.length) {
+					inheritable = Arrays.copyOf(inheritable, inheritableSize * 2);
+				}
+				inheritable[inheritableSize++] = start;
+				inheritable[inheritableSize++] = end;
+			}
+			return this;
+		}
+
+		public Builder add(RevisionRangeSet set) {
+			for (int i = 0; i < set.inheritable.length; i += 2) {
+				add(set.inheritable[i], set.inheritable[i + 1], false);
+			}
+			for (int i = 0; i < set.nonInheritable.length; i += 2) {
+				add(set.nonInheritable[i], set.nonInheritable[i + 1], true);
+			}
+			return this;
+		}
+
+		public RevisionRangeSet build() {
+			long[] builtInheritable = normalize(inheritable, inheritableSize);
+			long[] builtNonInheritable = difference(normalize(nonInheritable, nonInheritableSize), builtInheritable);
+			if (builtInheritable.length == 0 && builtNonInheritable.length == 0) {
+				return EMPTY;
+			}
+			return new RevisionRangeSet(builtInheritable, builtNonInheritable);
+		}
+
+		/**
+		 * Sort the first size/2 ranges by start revision and coalesce any which overlap or touch.
+		 */
+		private static long[] normalize(long[] ranges, int size) {
+			if (size == 0) {
+				return NO_RANGES;
+			}
+			boolean sorted = true;
+			for (int i = 2; i < size && sorted; i += 2) {
+				sorted = ranges[i - 2] <= ranges[i];
+			}
+			long[] source = ranges;
+			if (!sorted) {
+				Long[] order = new Long[size / 2];
+				for (int i = 0; i < order.length; i++) {
+					order[i] = (long) i;
+				}
+				Arrays.sort(order, (x, y) -> Long.compare(ranges[(int) (x * 2)], ranges[(int) (y * 2)]));
+				source = new long[size];
+				for (int i = 0; i < order.length; i++) {
+					source[i * 2] = ranges[(int) (order[i] * 2)];
+					source[i * 2 + 1] = ranges[(int) (order[i] * 2 + 1)];
+				}
+			}
+			long[] result = new long[size];
+			int resultSize = 0;
+			for (int i = 0; i < size; i += 2) {
+				if (resultSize > 0 && source[i] <= result[resultSize - 1] + 1) {
+					result[resultSize - 1] = Math.max(result[resultSize - 1], source[i + 1]);
+				} else {
+					result[resultSize++] = source[i];
+					result[resultSize++] = source[i + 1];
+				}
+			}
+			return trim(result, resultSize);
+		}
+	}
+}
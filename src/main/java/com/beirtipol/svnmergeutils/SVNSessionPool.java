@@ -0,0 +1,328 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tmatesoft.svn.core.ISVNCanceller;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.io.ISVNSession;
+import org.tmatesoft.svn.core.io.ISVNTunnelProvider;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc.ISVNRepositoryPool;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
+import org.tmatesoft.svn.util.ISVNDebugLog;
+
+/**
+ * A repository pool which can be shared by any number of {@link org.tmatesoft.svn.core.wc.SVNClientManager}s, so that
+ * every worker in a run reuses the same server sessions rather than each paying for its own connection setup and
+ * authentication.
+ *
+ * As with SVNKit's own pool, a session is only ever used by one thread at a time: each thread is given its own session
+ * per server. Once that thread has finished, or has called {@link #releaseSessions()}, its sessions become idle and are
+ * handed on to the next thread which needs one for the same server. At most a given number of idle sessions are kept
+ * per server, and any which have been idle for longer than the idle timeout are closed.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class SVNSessionPool implements ISVNRepositoryPool {
+
+	private static SVNSessionPool						defaultPool;
+
+	private final ISVNTunnelProvider					tunnelProvider;
+	private final boolean								keepAlive;
+	private final int									maxIdlePerHost;
+	private final long									idleTimeoutMillis;
+
+	private final Map<Thread, Map<String, SVNRepository>>	activeSessions	= new HashMap<>();
+	private final Map<String, Deque<IdleSession>>			idleSessions	= new HashMap<>();
+
+	private final AtomicLong							opened			= new AtomicLong();
+	private final AtomicLong							reused			= new AtomicLong();
+	private final AtomicLong							evicted			= new AtomicLong();
+
+	private ISVNAuthenticationManager					authenticationManager;
+	private ISVNCanceller								canceller;
+	private ISVNDebugLog								debugLog;
+
+	/**
+	 *
+	 * @param authenticationManager
+	 * @param tunnelProvider
+	 *            used to open svn+ssh sessions, may be null
+	 * @param keepAlive
+	 *            whether a session keeps its connection open between requests
+	 * @param maxIdlePerHost
+	 *            the most idle sessions to keep for any one server
+	 * @param idleTimeoutMillis
+	 *            how long a session may be idle before it is closed
+	 */
+	public SVNSessionPool(ISVNAuthenticationManager authenticationManager, ISVNTunnelProvider tunnelProvider, boolean keepAlive, int maxIdlePerHost, long idleTimeoutMillis) {
+		this.authenticationManager = authenticationManager;
+		this.tunnelProvider = tunnelProvider;
+		this.keepAlive = keepAlive;
+		this.maxIdlePerHost = maxIdlePerHost;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	/**
+	 *
+	 * @return the pool used by SVN clients which have not been given one, with the default authentication manager.
+	 */
+	public static synchronized SVNSessionPool getDefault() {
+		if (defaultPool == null) {
+			defaultPool = new SVNSessionPool(SVNWCUtil.createDefaultAuthenticationManager(), SVNWCUtil.createDefaultOptions(true), true, 4, 60000);
+		}
+		return defaultPool;
+	}
+
+	@Override
+	public synchronized SVNRepository createRepository(SVNURL url, boolean mayReuse) throws SVNException {
+		evictIdleSessions();
+		if (!mayReuse) {
+			return openSession(url);
+		}
+
+		String serverKey = getServerKey(url);
+		Map<String, SVNRepository> threadSessions = activeSessions.computeIfAbsent(Thread.currentThread(), thread -> new HashMap<>());
+		SVNRepository repository = threadSessions.get(serverKey);
+		if (repository == null) {
+			Deque<IdleSession> idle = idleSessions.get(serverKey);
+			if (idle != null && !idle.isEmpty()) {
+				repository = idle.pollLast().repository;
+			}
+		}
+		if (repository == null) {
+			repository = openSession(url);
+		} else {
+			reused.incrementAndGet();
+			repository.setLocation(url, false);
+			configure(repository);
+		}
+		threadSessions.put(serverKey, repository);
+		return repository;
+	}
+
+	/**
+	 * Hand the sessions held by the current thread back to the pool, so that other threads can reuse them.
+	 */
+	public synchronized void releaseSessions() {
+		release(Thread.currentThread(), Collections.emptySet());
+		evictIdleSessions();
+	}
+
+	/**
+	 * Hand back the sessions the current thread has taken since it held sessions for the given servers, keeping the
+	 * ones it already held, e.g. so that a check run on a caller's thread only gives up the sessions it opened itself.
+	 * 
+	 * @param heldServers
+	 *            as returned by {@link #getHeldServers()} before the sessions were taken
+	 */
+	public synchronized void releaseSessions(Set<String> heldServers) {
+		release(Thread.currentThread(), heldServers);
+		evictIdleSessions();
+	}
+
+	/**
+	 *
+	 * @return the servers the current thread holds a session for.
+	 */
+	public synchronized Set<String> getHeldServers() {
+		Map<String, SVNRepository> threadSessions = activeSessions.get(Thread.currentThread());
+		return threadSessions == null ? Collections.emptySet() : new HashSet<>(threadSessions.keySet());
+	}
+
+	@Override
+	public synchronized void setAuthenticationManager(ISVNAuthenticationManager authenticationManager) {
+		this.authenticationManager = authenticationManager;
+	}
+
+	@Override
+	public synchronized void setCanceller(ISVNCanceller canceller) {
+		this.canceller = canceller;
+	}
+
+	@Override
+	public synchronized void setDebugLog(ISVNDebugLog debugLog) {
+		this.debugLog = debugLog;
+	}
+
+	/**
+	 * Close the connections of the idle sessions, or of every session if shutdownAll is set. Closed sessions reconnect
+	 * if they are used again.
+	 */
+	@Override
+	@Deprecated
+	public synchronized void shutdownConnections(boolean shutdownAll) {
+		for (Deque<IdleSession> idle : idleSessions.values()) {
+			for (IdleSession session : idle) {
+				close(session.repository);
+			}
+			idle.clear();
+		}
+		if (shutdownAll) {
+			for (Map<String, SVNRepository> threadSessions : activeSessions.values()) {
+				for (SVNRepository repository : threadSessions.values()) {
+					close(repository);
+				}
+			}
+			activeSessions.clear();
+		}
+	}
+
+	/**
+	 * Close every session held by the pool. The pool itself may still be used afterwards, and will open new sessions as
+	 * they are needed.
+	 */
+	@Override
+	public synchronized void dispose() {
+		shutdownConnections(true);
+	}
+
+	/**
+	 *
+	 * @return the number of sessions which have been opened to a server.
+	 */
+	public long getOpenedCount() {
+		return opened.get();
+	}
+
+	/**
+	 *
+	 * @return the number of times an existing session was handed out instead of a new one being opened.
+	 */
+	public long getReusedCount() {
+		return reused.get();
+	}
+
+	/**
+	 *
+	 * @return the number of sessions which have been closed by the pool.
+	 */
+	public long getEvictedCount() {
+		return evicted.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s sessions opened, %s reused, %s evicted", getOpenedCount(), getReusedCount(), getEvictedCount());
+	}
+
+	private SVNRepository openSession(SVNURL url) throws SVNException {
+		SVNRepository repository = SVNRepositoryFactory.create(url, keepAlive ? ISVNSession.KEEP_ALIVE : ISVNSession.DEFAULT);
+		repository.setTunnelProvider(tunnelProvider);
+		configure(repository);
+		opened.incrementAndGet();
+		return repository;
+	}
+
+	private void configure(SVNRepository repository) {
+		repository.setAuthenticationManager(authenticationManager);
+		repository.setCanceller(canceller);
+		if (debugLog != null) {
+			repository.setDebugLog(debugLog);
+		}
+	}
+
+	private void release(Thread thread, Set<String> keptServers) {
+		Map<String, SVNRepository> threadSessions = activeSessions.get(thread);
+		if (threadSessions == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		for (Iterator<Map.Entry<String, SVNRepository>> it = threadSessions.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, SVNRepository> entry = it.next();
+			if (!keptServers.contains(entry.getKey())) {
+				idleSessions.computeIfAbsent(entry.getKey(), key -> new ArrayDeque<>()).addLast(new IdleSession(entry.getValue(), now));
+				it.remove();
+			}
+		}
+		if (threadSessions.isEmpty()) {
+			activeSessions.remove(thread);
+		}
+	}
+
+	/**
+	 * Reclaim the sessions of threads which have finished, then close the idle sessions which are either over the per
+	 * server limit or have been idle for too long.
+	 */
+	private void evictIdleSessions() {
+		List<Thread> finishedThreads = new ArrayList<>();
+		for (Thread thread : activeSessions.keySet()) {
+			if (!thread.isAlive()) {
+				finishedThreads.add(thread);
+			}
+		}
+		for (Thread thread : finishedThreads) {
+			release(thread, Collections.emptySet());
+		}
+
+		long now = System.currentTimeMillis();
+		for (Deque<IdleSession> idle : idleSessions.values()) {
+			while (idle.size() > maxIdlePerHost) {
+				close(idle.pollFirst().repository);
+			}
+			for (Iterator<IdleSession> it = idle.iterator(); it.hasNext();) {
+				IdleSession session = it.next();
+				if (now - session.idleSince >= idleTimeoutMillis) {
+					close(session.repository);
+					it.remove();
+				}
+			}
+		}
+	}
+
+	private void close(SVNRepository repository) {
+		repository.closeSession();
+		evicted.incrementAndGet();
+	}
+
+	private static String getServerKey(SVNURL url) {
+		return url.getProtocol() + "://" + url.getUserInfo() + "@" + url.getHost() + ":" + url.getPort();
+	}
+
+	private static class IdleSession {
+		private final SVNRepository	repository;
+		private final long			idleSince;
+
+		private IdleSession(SVNRepository repository, long idleSince) {
+			this.repository = repository;
+			this.idleSince = idleSince;
+		}
+	}
+}
@@ -24,19 +24,27 @@
 package com.beirtipol.svnmergeutils;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNMergeInfo;
+import org.tmatesoft.svn.core.SVNMergeInfoInheritance;
+import org.tmatesoft.svn.core.SVNMergeRange;
+import org.tmatesoft.svn.core.SVNMergeRangeList;
 import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.wc.SVNClientManager;
 import org.tmatesoft.svn.core.wc.SVNPropertyData;
 import org.tmatesoft.svn.core.wc.SVNRevision;
@@ -55,29 +63,22 @@ public class SVNUtils {
 	public static final String	SVN_MERGEINFO_PROP		= "svn:mergeinfo";
 
 	/**
-	 * Regular Expression for ranges of revisions as used in SVN Properties
-	 */
-	private static Pattern		REVISION_RANGE_PATTERN	= Pattern.compile("(\\d*)-(\\d*)");
-
-	/**
-	 * Create an SVNPropertyValue object representing merge information for the given branches and revisions.
+	 * Create an SVNPropertyValue object representing merge information for the given branches and revisions. The merge
+	 * information is {@link #normalizeMergeInfo(SortedMap) normalized} first.
 	 * 
 	 * @param mergedRevisions
 	 * @return
 	 */
-	public static SVNPropertyValue createMergeInfoPropertyValue(SortedMap<String, Set<Long>> mergedRevisions) {
+	public static SVNPropertyValue createMergeInfoPropertyValue(SortedMap<String, RevisionRangeSet> mergedRevisions) {
 		List<String> lines = new ArrayList<>();
-		for (Entry<String, Set<Long>> entry : mergedRevisions.entrySet()) {
+		for (Entry<String, RevisionRangeSet> entry : normalizeMergeInfo(mergedRevisions).entrySet()) {
 			StringBuilder sb = new StringBuilder();
 			sb.append(entry.getKey());
 			sb.append(":");
-			sb.append(StringUtils.join(entry.getValue(), ","));
+			entry.getValue().appendTo(sb);
 			lines.add(sb.toString());
 		}
-		StringBuilder prop = new StringBuilder();
-		prop.append(StringUtils.join(lines, "\n"));
-		prop.append("\r");
-		return SVNPropertyValue.create(prop.toString());
+		return SVNPropertyValue.create(StringUtils.join(lines, "\n"));
 	}
 
 	public static SVNPropertyData getMergeInformation(SVNClientManager clientManager, File path) throws SVNException {
@@ -89,33 +90,307 @@ public class SVNUtils {
 		}
 	}
 
-	public static SortedMap<String, Set<Long>> parseMergeInfoPropertyData(SVNPropertyData propData) {
-		SortedMap<String, Set<Long>> result = new TreeMap<>();
-		if (propData == null) {
+	/**
+	 * 
+	 * @return the path of the url relative to the root of the repository, with a leading slash. e.g. '/branches/rel'
+	 */
+	public static String getRepositoryPath(SVNRepository repository, SVNURL url) throws SVNException {
+		String rootPath = StringUtils.removeEnd(repository.getRepositoryRoot(true).getPath(), "/");
+		String path = StringUtils.removeEnd(url.getPath(), "/");
+		if (!path.equals(rootPath) && !path.startsWith(rootPath + "/")) {
+			SVNErrorMessage err = SVNErrorMessage.create(SVNErrorCode.RA_ILLEGAL_URL, "URL ''{0}'' is not within repository root ''{1}''", url, repository.getRepositoryRoot(false));
+			throw new SVNException(err);
+		}
+		String relativePath = path.substring(rootPath.length());
+		return relativePath.isEmpty() ? "/" : relativePath;
+	}
+
+	/**
+	 * Convert SVNKit's merge range list, whose ranges have exclusive start revisions, to a {@link RevisionRangeSet}.
+	 */
+	public static RevisionRangeSet toRevisionRangeSet(SVNMergeRangeList rangeList) {
+		RevisionRangeSet.Builder builder = new RevisionRangeSet.Builder();
+		for (SVNMergeRange range : rangeList.getRanges()) {
+			builder.add(range.getStartRevision() + 1, range.getEndRevision(), !range.isInheritable());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Put merge information into its minimal form. Each merge source path gets a single leading slash and no trailing
+	 * slash, sources which only differed in that way have their revisions merged, and sources without any revisions are
+	 * dropped. Revisions are held as ranges, so contiguous revisions are always written as a single range, and
+	 * non-inheritable ranges keep their marker.
+	 * 
+	 * @return the normalized merge information, sorted by merge source path.
+	 */
+	public static SortedMap<String, RevisionRangeSet> normalizeMergeInfo(SortedMap<String, RevisionRangeSet> mergeInfo) {
+		SortedMap<String, RevisionRangeSet> normalized = new TreeMap<>();
+		for (Entry<String, RevisionRangeSet> entry : mergeInfo.entrySet()) {
+			if (entry.getValue() == null || entry.getValue().isEmpty()) {
+				continue;
+			}
+			String path = "/" + entry.getKey().replaceAll("/{2,}", "/").replaceAll("^/|/$", "");
+			normalized.merge(path, entry.getValue(), RevisionRangeSet::union);
+		}
+		return normalized;
+	}
+
+	/**
+	 * Whether a node's own merge information says nothing more than it would inherit without it, in which case it can be
+	 * removed. As with svn's own elision, this is all or nothing: merge information which adds anything at all to what
+	 * is inherited is kept in full.
+	 * 
+	 * @param mergeInfo
+	 *            the node's own merge information
+	 * @param inherited
+	 *            the merge information the node would inherit from its nearest ancestor, as returned by
+	 *            {@link #getInheritedMergeInfo(SVNRepository, String, long)}
+	 */
+	public static boolean isImpliedByInheritance(SortedMap<String, RevisionRangeSet> mergeInfo, SortedMap<String, RevisionRangeSet> inherited) {
+		SortedMap<String, RevisionRangeSet> inheritable = new TreeMap<>();
+		for (Entry<String, RevisionRangeSet> entry : inherited.entrySet()) {
+			inheritable.put(entry.getKey(), entry.getValue().withoutNonInheritable());
+		}
+		return normalizeMergeInfo(mergeInfo).equals(normalizeMergeInfo(inheritable));
+	}
+
+	/**
+	 * Fetch the merge information the given path would inherit from its nearest ancestor which has any, ignoring any
+	 * of its own. The merge source paths are those which apply to the path itself.
+	 * 
+	 * @param repository
+	 * @param path
+	 *            repository path, with a leading slash
+	 * @param revision
+	 * @return merged revisions keyed by merge source path, empty if nothing is inherited
+	 * @throws SVNException
+	 */
+	public static SortedMap<String, RevisionRangeSet> getInheritedMergeInfo(SVNRepository repository, String path, long revision) throws SVNException {
+		SortedMap<String, RevisionRangeSet> inherited = new TreeMap<>();
+		Map<String, SVNMergeInfo> mergeInfo = repository.getMergeInfo(new String[] { path }, revision, SVNMergeInfoInheritance.NEAREST_ANCESTOR, false);
+		if (mergeInfo == null) {
+			return inherited;
+		}
+		for (SVNMergeInfo nodeMergeInfo : mergeInfo.values()) {
+			for (Entry<String, SVNMergeRangeList> source : nodeMergeInfo.getMergeSourcesToMergeLists().entrySet()) {
+				inherited.merge(source.getKey(), toRevisionRangeSet(source.getValue()), RevisionRangeSet::union);
+			}
+		}
+		return inherited;
+	}
+
+	/**
+	 * Fetch the explicit or inherited mergeinfo of the given path, along with the explicit mergeinfo of each of its
+	 * descendants, in a single request.
+	 * 
+	 * @param repository
+	 * @param path
+	 *            repository path, with a leading slash
+	 * @param revision
+	 * @return merged revisions keyed by the repository path of each node which has mergeinfo, then by merge source path
+	 * @throws SVNException
+	 */
+	public static SortedMap<String, SortedMap<String, RevisionRangeSet>> getMergeInfoCatalog(SVNRepository repository, String path, long revision) throws SVNException {
+		return getMergeInfoCatalog(repository, path, revision, SVNMergeInfoInheritance.INHERITED);
+	}
+
+	/**
+	 * Fetch the mergeinfo of the given path, along with the explicit mergeinfo of each of its descendants, in a single
+	 * request.
+	 * 
+	 * @param repository
+	 * @param path
+	 *            repository path, with a leading slash
+	 * @param revision
+	 * @param inheritance
+	 *            whether the path itself may report mergeinfo inherited from its parents
+	 * @return merged revisions keyed by the repository path of each node which has mergeinfo, then by merge source path
+	 * @throws SVNException
+	 */
+	public static SortedMap<String, SortedMap<String, RevisionRangeSet>> getMergeInfoCatalog(SVNRepository repository, String path, long revision, SVNMergeInfoInheritance inheritance) throws SVNException {
+		SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog = new TreeMap<>();
+		Map<String, SVNMergeInfo> mergeInfo = repository.getMergeInfo(new String[] { path }, revision, inheritance, true);
+		if (mergeInfo == null) {
+			return catalog;
+		}
+		for (Entry<String, SVNMergeInfo> node : mergeInfo.entrySet()) {
+			SortedMap<String, RevisionRangeSet> nodeMergeInfo = new TreeMap<>();
+			for (Entry<String, SVNMergeRangeList> source : node.getValue().getMergeSourcesToMergeLists().entrySet()) {
+				nodeMergeInfo.put(source.getKey(), toRevisionRangeSet(source.getValue()));
+			}
+			catalog.put(node.getKey(), nodeMergeInfo);
+		}
+		return catalog;
+	}
+
+	/**
+	 * Work out which revisions of the merge source have been merged into the whole of the merge target. A revision only
+	 * counts as merged if it has been recorded, as inheritable, against every node of the target which carries
+	 * mergeinfo. Partially merged revisions are treated as not merged.
+	 * 
+	 * @param catalog
+	 *            as returned by {@link #getMergeInfoCatalog(SVNRepository, String, long)} for the target path
+	 * @param targetPath
+	 *            repository path of the merge target
+	 * @param sourcePath
+	 *            repository path of the merge source
+	 * @return
+	 */
+	public static RevisionRangeSet getMergedRevisions(SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog, String targetPath, String sourcePath) {
+		RevisionRangeSet merged = null;
+		for (Entry<String, SortedMap<String, RevisionRangeSet>> node : catalog.entrySet()) {
+			String nodePath = node.getKey();
+			String relativePath = nodePath.length() > targetPath.length() ? nodePath.substring(targetPath.length()) : "";
+			RevisionRangeSet nodeMerged = node.getValue().get(sourcePath + relativePath);
+			if (nodeMerged == null) {
+				return RevisionRangeSet.EMPTY;
+			}
+			nodeMerged = nodeMerged.withoutNonInheritable();
+			merged = merged == null ? nodeMerged : merged.intersection(nodeMerged);
+		}
+		return merged == null ? RevisionRangeSet.EMPTY : merged;
+	}
+
+	/**
+	 * 
+	 * @return a digest of the mergeinfo catalog which changes whenever any of the mergeinfo in it changes.
+	 */
+	public static String getMergeInfoFingerprint(SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog) {
+		StringBuilder sb = new StringBuilder();
+		for (Entry<String, SortedMap<String, RevisionRangeSet>> node : catalog.entrySet()) {
+			for (Entry<String, RevisionRangeSet> source : node.getValue().entrySet()) {
+				sb.append(node.getKey()).append('|').append(source.getKey()).append(':');
+				source.getValue().appendTo(sb).append('\n');
+			}
+		}
+		return sha1(sb.toString());
+	}
+
+	/**
+	 * 
+	 * @return a digest of the mergeinfo the target holds for the given merge source, which changes whenever that
+	 *         mergeinfo changes, or a node below the target gains or loses mergeinfo. Mergeinfo for other merge sources is
+	 *         left out, so that merging one branch does not change the fingerprint of every other.
+	 */
+	public static String getMergeInfoFingerprint(SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog, String targetPath, String sourcePath) {
+		StringBuilder sb = new StringBuilder();
+		for (Entry<String, SortedMap<String, RevisionRangeSet>> node : catalog.entrySet()) {
+			String nodePath = node.getKey();
+			String relativePath = nodePath.length() > targetPath.length() ? nodePath.substring(targetPath.length()) : "";
+			RevisionRangeSet nodeMerged = node.getValue().get(sourcePath + relativePath);
+			if (nodeMerged == null && relativePath.isEmpty()) {
+				// Mergeinfo on the target itself which says nothing about the source is the same as none.
+				continue;
+			}
+			sb.append(nodePath).append(':');
+			if (nodeMerged != null) {
+				nodeMerged.appendTo(sb);
+			}
+			sb.append('\n');
+		}
+		return sha1(sb.toString());
+	}
+
+	static String sha1(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static SortedMap<String, RevisionRangeSet> parseMergeInfoPropertyData(SVNPropertyData propData) {
+		if (propData == null || propData.getValue() == null) {
+			return new TreeMap<>();
+		}
+		return parseMergeInfo(propData.getValue().getString());
+	}
+
+	/**
+	 * Parse the value of an svn:mergeinfo property. Each line is a merge source path, a colon, and a comma-separated
+	 * list of revisions and inclusive revision ranges, any of which may carry a trailing '*' to mark it as
+	 * non-inheritable. e.g. '/branches/rel:1-480000,480002*'.
+	 * 
+	 * This is a single pass over the characters of the property, so the cost grows with the number of ranges rather than
+	 * with the number of revisions they cover.
+	 * 
+	 * @param mergeInfo
+	 * @return merged revisions keyed by merge source path
+	 */
+	public static SortedMap<String, RevisionRangeSet> parseMergeInfo(String mergeInfo) {
+		SortedMap<String, RevisionRangeSet> result = new TreeMap<>();
+		if (mergeInfo == null) {
 			return result;
 		}
+		int length = mergeInfo.length();
+		int lineStart = 0;
+		while (lineStart < length) {
+			int lineEnd = mergeInfo.indexOf('\n', lineStart);
+			if (lineEnd < 0) {
+				lineEnd = length;
+			}
+			// Paths may themselves contain colons, so the revision list starts after the last one on the line.
+			int colon = lineEnd - 1;
+			while (colon >= lineStart && mergeInfo.charAt(colon) != ':') {
+				colon--;
+			}
+			if (colon >= lineStart) {
+				String branch = mergeInfo.substring(lineStart, colon).trim();
+				RevisionRangeSet revisions = parseRevisionRanges(mergeInfo, colon + 1, lineEnd);
+				RevisionRangeSet existing = result.get(branch);
+				result.put(branch, existing == null ? revisions : existing.union(revisions));
+			} else if (!mergeInfo.substring(lineStart, lineEnd).trim().isEmpty()) {
+				throw new IllegalArgumentException("Invalid svn:mergeinfo line: " + mergeInfo.substring(lineStart, lineEnd));
+			}
+			lineStart = lineEnd + 1;
+		}
+		return result;
+	}
 
-		SVNPropertyValue value = propData.getValue();
-		if (value != null) {
-			String propString = value.getString();
-			for (String line : propString.split("\n")) {
-				String[] branchMerges = line.split(":");
-				String branch = branchMerges[0];
-				Set<Long> revisions = new TreeSet<>();
-				for (String mergedRevision : branchMerges[1].split(",")) {
-					mergedRevision = StringUtils.strip(mergedRevision);
-					Matcher matcher = REVISION_RANGE_PATTERN.matcher(mergedRevision);
-					if (matcher.matches()) {
-						for (long l = Long.parseLong(matcher.group(1)); l <= Long.parseLong(matcher.group(2)); l++) {
-							revisions.add(l);
-						}
-					} else {
-						revisions.add(Long.parseLong(mergedRevision));
-					}
+	private static RevisionRangeSet parseRevisionRanges(String s, int start, int end) {
+		RevisionRangeSet.Builder builder = new RevisionRangeSet.Builder();
+		int i = start;
+		while (i < end) {
+			char c = s.charAt(i);
+			if (c == ',' || Character.isWhitespace(c)) {
+				i++;
+				continue;
+			}
+			long rangeStart = 0;
+			int digitsStart = i;
+			while (i < end && (c = s.charAt(i)) >= '0' && c <= '9') {
+				rangeStart = rangeStart * 10 + (c - '0');
+				i++;
+			}
+			if (i == digitsStart) {
+				throw new IllegalArgumentException("Invalid svn:mergeinfo revision range: " + s.substring(start, end));
+			}
+			long rangeEnd = rangeStart;
+			if (i < end && s.charAt(i) == '-') {
+				i++;
+				rangeEnd = 0;
+				digitsStart = i;
+				while (i < end && (c = s.charAt(i)) >= '0' && c <= '9') {
+					rangeEnd = rangeEnd * 10 + (c - '0');
+					i++;
+				}
+				if (i == digitsStart) {
+					throw new IllegalArgumentException("Invalid svn:mergeinfo revision range: " + s.substring(start, end));
 				}
-				result.put(branch, revisions);
 			}
+			boolean nonInheritable = false;
+			if (i < end && s.charAt(i) == '*') {
+				nonInheritable = true;
+				i++;
+			}
+			builder.add(rangeStart, rangeEnd, nonInheritable);
 		}
-		return result;
+		return builder.build();
 	}
 }
@@ -0,0 +1,86 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads and writes the serialized objects, such as {@link MissingMergeState}s and {@link MergeInfoManifest}s, which are
+ * kept on disk between runs.
+ * 
+ * @author beirtipol@gmail.com
+ *
+ */
+public class SerializedFiles {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SerializedFiles.class);
+
+	/**
+	 * 
+	 * @param description
+	 *            what the file holds, for the warning logged if it cannot be read
+	 * @return the object of the given type held in the file, or null if there is none or it cannot be read.
+	 */
+	public static <T extends Serializable> T load(File file, Class<T> type, String description) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			return type.cast(in.readObject());
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			LOGGER.warn(String.format("Ignoring unreadable %s file %s", description, file), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Write the object to the file. The file is replaced in one step so that an interrupted run never leaves a partial
+	 * file behind.
+	 */
+	public static void save(File file, Serializable object) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		Files.createDirectories(dir.toPath());
+		File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+		try {
+			try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				out.writeObject(object);
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+}
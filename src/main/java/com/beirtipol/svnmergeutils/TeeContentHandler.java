@@ -0,0 +1,122 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Passes every SAX event on to each of a number of content handlers, so that a single pass over the log entries can
+ * write e.g. the xml report and its html transformation at the same time.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class TeeContentHandler implements ContentHandler {
+
+	private final ContentHandler[] handlers;
+
+	public TeeContentHandler(ContentHandler... handlers) {
+		this.handlers = handlers;
+	}
+
+	@Override
+	public void setDocumentLocator(Locator locator) {
+		for (ContentHandler handler : handlers) {
+			handler.setDocumentLocator(locator);
+		}
+	}
+
+	@Override
+	public void startDocument() throws SAXException {
+		for (ContentHandler handler : handlers) {
+			handler.startDocument();
+		}
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		for (ContentHandler handler : handlers) {
+			handler.endDocument();
+		}
+	}
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri) throws SAXException {
+		for (ContentHandler handler : handlers) {
+			handler.startPrefixMapping(prefix, uri);
+		}
+	}
+
+	@Override
+	public void endPrefixMapping(String prefix) throws SAXException {
+		for (ContentHandler handler : handlers) {
+			handler.endPrefixMapping(prefix);
+		}
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+		for (ContentHandler handler : handlers) {
+			handler.startElement(uri, localName, qName, atts);
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		for (ContentHandler handler : handlers) {
+			handler.endElement(uri, localName, qName);
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException {
+		for (ContentHandler handler : handlers) {
+			handler.characters(ch, start, length);
+		}
+	}
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+		for (ContentHandler handler : handlers) {
+			handler.ignorableWhitespace(ch, start, length);
+		}
+	}
+
+	@Override
+	public void processingInstruction(String target, String data) throws SAXException {
+		for (ContentHandler handler : handlers) {
+			handler.processingInstruction(target, data);
+		}
+	}
+
+	@Override
+	public void skippedEntity(String name) throws SAXException {
+		for (ContentHandler handler : handlers) {
+			handler.skippedEntity(name);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.function.LongConsumer;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Passes every SAX event on to another content handler, and reports the time that handler took over it, so that e.g.
+ * the cost of the html transformation can be told apart from that of the rest of the report.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class TimedContentHandler implements ContentHandler {
+
+	private final ContentHandler	handler;
+	private final LongConsumer		elapsedNanos;
+
+	/**
+	 * 
+	 * @param handler
+	 * @param elapsedNanos
+	 *            given the time taken by the handler over each event
+	 */
+	public TimedContentHandler(ContentHandler handler, LongConsumer elapsedNanos) {
+		this.handler = handler;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	@Override
+	public void setDocumentLocator(Locator locator) {
+		handler.setDocumentLocator(locator);
+	}
+
+	@Override
+	public void startDocument() throws SAXException {
+		long eventStart = System.nanoTime();
+		try {
+			handler.startDocument();
+		} finally {
+			elapsedNanos.accept(System.nanoTime() - eventStart);
+		}
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		long eventStart = System.nanoTime();
+		try {
+			handler.endDocument();
+		} finally {
+			elapsedNanos.accept(System.nanoTime() - eventStart);
+		}
+	}
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri) throws SAXException {
+		long eventStart = System.nanoTime();
+		try {
+			handler.startPrefixMapping(prefix, uri);
+		} finally {
+			elapsedNanos.accept(System.nanoTime() - eventStart);
+		}
+	}
+
+	@Override
+	public void endPrefixMapping(String prefix) throws SAXException {
+		long eventStart = System.nanoTime();
+		try {
+			handler.endPrefixMapping(prefix);
+		} finally {
+			elapsedNanos.accept(System.nanoTime() - eventStart);
+		}
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+		long eventStart = System.nanoTime();
+		try {
+			handler.startElement(uri, localName, qName, atts);
+		} finally {
+			elapsedNanos.accept(System.nanoTime() - eventStart);
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException {
+		long eventStart = System.nanoTime();
+		try {
+			handler.endElement(uri, localName, qName);
+		} finally {
+			elapsedNanos.accept(System.nanoTime() - eventStart);
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException {
+		long eventStart = System.nanoTime();
+		try {
+			handler.characters(ch, start, length);
+		} finally {
+			elapsedNanos.accept(System.nanoTime() - eventStart);
+		}
+	}
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+		long eventStart = System.nanoTime();
+		try {
+			handler.ignorableWhitespace(ch, start, length);
+		} finally {
+			elapsedNanos.accept(System.nanoTime() - eventStart);
+		}
+	}
+
+	@Override
+	public void processingInstruction(String target, String data) throws SAXException {
+		long eventStart = System.nanoTime();
+		try {
+			handler.processingInstruction(target, data);
+		} finally {
+			elapsedNanos.accept(System.nanoTime() - eventStart);
+		}
+	}
+
+	@Override
+	public void skippedEntity(String name) throws SAXException {
+		long eventStart = System.nanoTime();
+		try {
+			handler.skippedEntity(name);
+		} finally {
+			elapsedNanos.accept(System.nanoTime() - eventStart);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+
+/**
+ * A log entry which holds only some of the paths changed in its revision, so that revisions touching thousands of
+ * files do not have to be kept, or written to the report, in full.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class TruncatedLogEntry extends SVNLogEntry {
+	private static final long	serialVersionUID	= 1L;
+
+	private final int			changedPathCount;
+
+	private TruncatedLogEntry(Map<String, SVNLogEntryPath> changedPaths, SVNLogEntry logEntry, int changedPathCount) {
+		super(changedPaths, logEntry.getRevision(), logEntry.getRevisionProperties(), logEntry.hasChildren());
+		this.changedPathCount = changedPathCount;
+		setSubtractiveMerge(logEntry.isSubtractiveMerge());
+		setNonInheriable(logEntry.isNonInheritable());
+	}
+
+	/**
+	 * 
+	 * @param logEntry
+	 * @param maxChangedPaths
+	 * @return the given entry if it changed no more than the given number of paths, otherwise a copy holding only the
+	 *         first of them in path order.
+	 */
+	public static SVNLogEntry truncate(SVNLogEntry logEntry, int maxChangedPaths) {
+		if (logEntry.getChangedPaths() == null || logEntry.getChangedPaths().size() <= maxChangedPaths) {
+			return logEntry;
+		}
+		Map<String, SVNLogEntryPath> changedPaths = new TreeMap<>();
+		for (Map.Entry<String, SVNLogEntryPath> changedPath : new TreeMap<>(logEntry.getChangedPaths()).entrySet()) {
+			if (changedPaths.size() == maxChangedPaths) {
+				break;
+			}
+			changedPaths.put(changedPath.getKey(), changedPath.getValue());
+		}
+		return new TruncatedLogEntry(changedPaths, logEntry, logEntry.getChangedPaths().size());
+	}
+
+	/**
+	 * 
+	 * @param logEntry
+	 *            an entry holding only some of the paths changed in its revision
+	 * @param changedPathCount
+	 *            the number of paths changed in the revision
+	 * @return a copy of the entry which records that it has been truncated.
+	 */
+	public static TruncatedLogEntry create(SVNLogEntry logEntry, int changedPathCount) {
+		return new TruncatedLogEntry(logEntry.getChangedPaths(), logEntry, changedPathCount);
+	}
+
+	/**
+	 * 
+	 * @return the number of paths changed in the revision, of which only some are held.
+	 */
+	public int getChangedPathCount() {
+		return changedPathCount;
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNException;
+import org.xml.sax.ContentHandler;
+
+/**
+ * Writes the report as svn log xml, with the merge source and target of each pair as attributes of its log entries.
+ * The document is only started once the first entry arrives, so a report with no missing merges is empty.
+ *
+ * @author beirtipol@gmail.com
+ *
+ */
+public class XMLReportSink implements ReportSink {
+
+	private final ContentHandler		contentHandler;
+	private BranchAwareXMLLogHandler	lastHandler;
+
+	public XMLReportSink(ContentHandler contentHandler) {
+		this.contentHandler = contentHandler;
+	}
+
+	@Override
+	public ISVNLogEntryHandler openPair(String mergeSourcePath, String mergeTargetPath) {
+		boolean started = lastHandler != null && lastHandler.started();
+		lastHandler = new BranchAwareXMLLogHandler(contentHandler, mergeTargetPath, mergeSourcePath, started);
+		return lastHandler;
+	}
+
+	@Override
+	public boolean finish() throws SVNException {
+		if (lastHandler == null || !lastHandler.started()) {
+			return false;
+		}
+		lastHandler.endDocument();
+		return true;
+	}
+}
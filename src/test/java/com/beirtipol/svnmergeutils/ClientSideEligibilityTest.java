@@ -0,0 +1,93 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+
+public class ClientSideEligibilityTest {
+	private static final String	path	= ClientSideEligibilityTest.class.getClassLoader().getResource(".").getPath() + File.separator + "eligibilityrepo";
+
+	@Before
+	public void setUp() throws IOException {
+		FileUtils.deleteDirectory(new File(path));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(new File(path));
+	}
+
+	@Test
+	public void testMatchesServerWithPartialAndSubtreeMerges() throws Exception {
+		SyntheticRepositoryGenerator generator = new SyntheticRepositoryGenerator().branches(3).revisions(60).modules(3).mergedFraction(0.5).subtreeMergedFraction(0.3);
+		SVNURL repositoryURL = generator.generate(new File(path));
+		SVNURL trunk = repositoryURL.appendPath(SyntheticRepositoryGenerator.TRUNK, false);
+
+		ClientSideEligibility eligibility = new ClientSideEligibility();
+		for (int branch = 0; branch < 3; branch++) {
+			SVNURL branchURL = repositoryURL.appendPath(SyntheticRepositoryGenerator.getBranchPath(branch), false);
+			assertMatchesServer(eligibility, branchURL, trunk);
+			assertMatchesServer(eligibility, trunk, branchURL);
+			assertMatchesServer(eligibility, branchURL, repositoryURL.appendPath(SyntheticRepositoryGenerator.getBranchPath((branch + 1) % 3), false));
+		}
+		// The trunk's mergeinfo, history and log are each only fetched once.
+		Assert.assertTrue(eligibility.getCacheHitCount() > 0);
+	}
+
+	@Test
+	public void testVerifyReportsServerResult() throws Exception {
+		SyntheticRepositoryGenerator generator = new SyntheticRepositoryGenerator().branches(1).revisions(10).mergedFraction(0.5);
+		SVNURL repositoryURL = generator.generate(new File(path));
+		SVNURL trunk = repositoryURL.appendPath(SyntheticRepositoryGenerator.TRUNK, false);
+		SVNURL branch = repositoryURL.appendPath(SyntheticRepositoryGenerator.getBranchPath(0), false);
+
+		ClientSideEligibility eligibility = new ClientSideEligibility();
+		MissingMergeWorker worker = new MissingMergeWorker(branch, trunk, false);
+		worker.setClientSideEligibility(eligibility, true);
+		List<SVNLogEntry> verified = worker.getMissingMerges();
+
+		Assert.assertEquals(0, eligibility.getMismatchCount());
+		Assert.assertEquals(generator.getUnmergedRevisionCount(), verified.size());
+		Assert.assertEquals(SyntheticRepositoryGenerator.getRevisions(new MissingMergeWorker(branch, trunk, false).getMissingMerges()), SyntheticRepositoryGenerator.getRevisions(verified));
+	}
+
+	private void assertMatchesServer(ClientSideEligibility eligibility, SVNURL mergeSource, SVNURL mergeTarget) throws SVNException {
+		List<SVNLogEntry> server = new MissingMergeWorker(mergeSource, mergeTarget, false).getMissingMerges();
+		MissingMergeWorker clientWorker = new MissingMergeWorker(mergeSource, mergeTarget, false);
+		clientWorker.setClientSideEligibility(eligibility, false);
+		List<SVNLogEntry> client = clientWorker.getMissingMerges();
+		Assert.assertEquals(mergeSource + " to " + mergeTarget, SyntheticRepositoryGenerator.getRevisions(server), SyntheticRepositoryGenerator.getRevisions(client));
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+
+public class IgnoreRulesMergeCheckerPredicateTest {
+
+	@Test
+	public void testRulesOfEachKind() {
+		IgnoreRulesMergeCheckerPredicate predicate = new IgnoreRulesMergeCheckerPredicate(Arrays.asList("author:jenkins", "revision:100-200,305", "message:^\\[maven-release-plugin\\].*", "message:(?i)WIP: (\\w+)", "path:/trunk/generated/.*"), false);
+
+		Assert.assertTrue(predicate.test(entry(1, "dev", "Fixed a bug", "/trunk/src/Main.java")));
+		Assert.assertFalse(predicate.test(entry(2, "jenkins", "Fixed a bug", "/trunk/src/Main.java")));
+		Assert.assertFalse(predicate.test(entry(150, "dev", "Fixed a bug", "/trunk/src/Main.java")));
+		Assert.assertFalse(predicate.test(entry(305, "dev", "Fixed a bug", "/trunk/src/Main.java")));
+		Assert.assertFalse(predicate.test(entry(3, "dev", "[maven-release-plugin] prepare release", "/trunk/pom.xml")));
+		Assert.assertFalse(predicate.test(entry(4, "dev", "wip: parser", "/trunk/src/Main.java")));
+		Assert.assertFalse(predicate.test(entry(5, "dev", "Regenerated", "/trunk/generated/A.java", "/trunk/generated/B.java")));
+		Assert.assertTrue(predicate.test(entry(6, "dev", "Regenerated", "/trunk/generated/A.java", "/trunk/src/Main.java")));
+
+		Map<String, Long> matchCounts = predicate.getMatchCounts();
+		Assert.assertEquals(Long.valueOf(1), matchCounts.get("author:jenkins"));
+		Assert.assertEquals(Long.valueOf(2), matchCounts.get("revision:100-200,305"));
+		Assert.assertEquals(Long.valueOf(1), matchCounts.get("message:^\\[maven-release-plugin\\].*"));
+		Assert.assertEquals(Long.valueOf(1), matchCounts.get("message:(?i)WIP: (\\w+)"));
+		Assert.assertEquals(Long.valueOf(1), matchCounts.get("path:/trunk/generated/.*"));
+	}
+
+	@Test
+	public void testMessageRulesAreMatchedAgainstTheWholeMessage() {
+		IgnoreRulesMergeCheckerPredicate predicate = new IgnoreRulesMergeCheckerPredicate(Arrays.asList("message:(a)(b)", "message:NOMERGE"), false);
+
+		Assert.assertTrue(predicate.test(entry(1, "dev", "Do not NOMERGE", "/trunk/file.txt")));
+		Assert.assertFalse(predicate.test(entry(2, "dev", "NOMERGE", "/trunk/file.txt")));
+		Assert.assertEquals(Long.valueOf(0), predicate.getMatchCounts().get("message:(a)(b)"));
+		Assert.assertEquals(Long.valueOf(1), predicate.getMatchCounts().get("message:NOMERGE"));
+	}
+
+	@Test
+	public void testRulesReferringToTheirOwnGroups() {
+		IgnoreRulesMergeCheckerPredicate predicate = new IgnoreRulesMergeCheckerPredicate(Arrays.asList("message:(foo)", "message:(a)\\1", "message:(?<word>b)\\k<word>", "message:\\Q\\1\\E"), false);
+
+		Assert.assertFalse(predicate.test(entry(1, "dev", "aa", "/trunk/file.txt")));
+		Assert.assertFalse(predicate.test(entry(2, "dev", "bb", "/trunk/file.txt")));
+		Assert.assertFalse(predicate.test(entry(3, "dev", "foo", "/trunk/file.txt")));
+		Assert.assertFalse(predicate.test(entry(4, "dev", "\\1", "/trunk/file.txt")));
+		Assert.assertTrue(predicate.test(entry(5, "dev", "ab", "/trunk/file.txt")));
+		Assert.assertEquals(Long.valueOf(1), predicate.getMatchCounts().get("message:(a)\\1"));
+		Assert.assertEquals(Long.valueOf(1), predicate.getMatchCounts().get("message:(?<word>b)\\k<word>"));
+		Assert.assertEquals(Long.valueOf(1), predicate.getMatchCounts().get("message:\\Q\\1\\E"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateAuthorRules() {
+		new IgnoreRulesMergeCheckerPredicate(Arrays.asList("author:jenkins", "author: jenkins"), false);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRule() {
+		new IgnoreRulesMergeCheckerPredicate(Arrays.asList("committer:jenkins"), false);
+	}
+
+	private static SVNLogEntry entry(long revision, String author, String message, String... paths) {
+		Map<String, SVNLogEntryPath> changedPaths = new HashMap<>();
+		for (String path : paths) {
+			changedPaths.put(path, new SVNLogEntryPath(path, SVNLogEntryPath.TYPE_MODIFIED, null, -1));
+		}
+		return new SVNLogEntry(changedPaths, revision, author, new Date(), message);
+	}
+}
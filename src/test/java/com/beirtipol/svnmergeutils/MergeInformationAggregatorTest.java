@@ -25,10 +25,13 @@ package com.beirtipol.svnmergeutils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
@@ -38,6 +41,8 @@ import org.junit.Test;
 import org.tmatesoft.svn.core.SVNCommitInfo;
 import org.tmatesoft.svn.core.SVNDepth;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNPropertyValue;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
 import org.tmatesoft.svn.core.io.ISVNEditor;
@@ -70,9 +75,21 @@ public class MergeInformationAggregatorTest {
 		FileUtils.deleteDirectory(new File(WC_PATH));
 	}
 
-	@SuppressWarnings("serial")
 	@Test
 	public void testAggregateMergeInformation() throws SVNException {
+		assertWorkingCopyMergeInformationAggregated();
+	}
+
+	@Test
+	public void testAggregateMergeInformationWithRecursiveScan() throws SVNException {
+		assertWorkingCopyMergeInformationAggregated("--recursiveScan");
+	}
+
+	/**
+	 * Check out the test repository, aggregate the mergeinfo of its trunk with the given extra arguments, and check that
+	 * it has all been moved up to trunk.
+	 */
+	private void assertWorkingCopyMergeInformationAggregated(String... extraArgs) throws SVNException {
 		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
 		createRepoStructure(repo.getCommitEditor("Adding Base Structure", null));
 
@@ -80,79 +97,157 @@ public class MergeInformationAggregatorTest {
 		SVNUpdateClient updateClient = clientManager.getUpdateClient();
 		updateClient.setIgnoreExternals(false);
 		updateClient.doCheckout(SVNURL.fromFile(new File(SVN_REPO)), new File(WC_PATH), SVNRevision.HEAD, SVNRevision.HEAD, SVNDepth.INFINITY, true);
-		TreeMap<String, Set<Long>> expected = new TreeMap<>();
-		expected.put("/branches/branch1", new TreeSet<Long>() {
-			{
-				add(1l);
-				add(2l);
-			}
-		});
-		expected.put("/branches/branch2", new TreeSet<Long>() {
-			{
-				add(3l);
-			}
-		});
-		expected.put("/branches/branch3", new TreeSet<Long>() {
-			{
-				add(4l);
-			}
-		});
+		TreeMap<String, RevisionRangeSet> expected = new TreeMap<>();
+		expected.put("/branches/branch1", RevisionRangeSet.of(1l, 2l));
+		expected.put("/branches/branch2", RevisionRangeSet.of(3l));
+		expected.put("/branches/branch3", RevisionRangeSet.of(4l));
 
 		File trunkPath = new File(WC_PATH, "trunk");
-		MergeInformationAggregator.main(new String[] { "--workingCopyRoot", trunkPath.getAbsolutePath(), "--mergeSourcesRoot", "/branches/" });
+		List<String> args = new ArrayList<>(Arrays.asList("--workingCopyRoot", trunkPath.getAbsolutePath(), "--mergeSourcesRoot", "/branches/"));
+		args.addAll(Arrays.asList(extraArgs));
+		MergeInformationAggregator.main(args.toArray(new String[args.size()]));
 
 		SVNPropertyData workingCopyProps = clientManager.getWCClient().doGetProperty(trunkPath, SVNUtils.SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING);
-		SortedMap<String, Set<Long>> actual = SVNUtils.parseMergeInfoPropertyData(workingCopyProps);
+		SortedMap<String, RevisionRangeSet> actual = SVNUtils.parseMergeInfoPropertyData(workingCopyProps);
 
 		Assert.assertEquals(expected, actual);
+		Assert.assertNull(clientManager.getWCClient().doGetProperty(new File(trunkPath, "folder1/innerfolder1"), SVNUtils.SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING));
+		Assert.assertNull(clientManager.getWCClient().doGetProperty(new File(trunkPath, "folder2"), SVNUtils.SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING));
+	}
+
+	@Test
+	public void testAggregatedMergeInformationInheritedFromParentIsRemoved() throws SVNException {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		ISVNEditor commitEditor = repo.getCommitEditor("Adding Structure with merge information on trunk", null);
+		commitEditor.openRoot(-1);
+		commitEditor.addDir("trunk", null, -1);
+		commitEditor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNPropertyValue.create("/branches/branch1:1-2"));
+		commitEditor.addDir("trunk/folder1", null, -1);
+		commitEditor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNPropertyValue.create("/branches/branch1/folder1:1"));
+		commitEditor.addDir("trunk/folder1/innerfolder1", null, -1);
+		commitEditor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNPropertyValue.create("/branches/branch1/folder1/innerfolder1:2"));
+		commitEditor.closeDir();
+		commitEditor.closeDir();
+		commitEditor.closeDir();
+		commitEditor.closeDir();
+		commitEditor.closeEdit();
+
+		SVNClientManager clientManager = SVNClientManager.newInstance(null, repo.getAuthenticationManager());
+		clientManager.getUpdateClient().doCheckout(SVNURL.fromFile(new File(SVN_REPO)), new File(WC_PATH), SVNRevision.HEAD, SVNRevision.HEAD, SVNDepth.INFINITY, true);
+
+		File folderPath = new File(WC_PATH, "trunk/folder1");
+		// Recorded against '/branches/branch1/folder1', which trunk's merge information already implies for folder1.
+		MergeInformationAggregator.main(new String[] { "--workingCopyRoot", folderPath.getAbsolutePath(), "--mergeSourcesRoot", "/branches/branch1/" });
+
+		Assert.assertNull(clientManager.getWCClient().doGetProperty(folderPath, SVNUtils.SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING));
+		Assert.assertNull(clientManager.getWCClient().doGetProperty(new File(folderPath, "innerfolder1"), SVNUtils.SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING));
+		Assert.assertNotNull(clientManager.getWCClient().doGetProperty(new File(WC_PATH, "trunk"), SVNUtils.SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING));
+	}
+
+	@Test
+	public void testAggregateMergeInformationIncrementally() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepoStructure(repo.getCommitEditor("Adding Base Structure", null));
+
+		SVNClientManager clientManager = SVNClientManager.newInstance(null, repo.getAuthenticationManager());
+		SVNUpdateClient updateClient = clientManager.getUpdateClient();
+		updateClient.setIgnoreExternals(false);
+		updateClient.doCheckout(SVNURL.fromFile(new File(SVN_REPO)), new File(WC_PATH), SVNRevision.HEAD, SVNRevision.HEAD, SVNDepth.INFINITY, true);
+		TreeMap<String, RevisionRangeSet> expected = new TreeMap<>();
+		expected.put("/branches/branch1", RevisionRangeSet.of(1l, 2l));
+		expected.put("/branches/branch2", RevisionRangeSet.of(3l));
+		expected.put("/branches/branch3", RevisionRangeSet.of(4l));
+
+		File trunkPath = new File(WC_PATH, "trunk");
+		File manifestFile = new File(WC_PATH + ".manifest");
+		String[] args = new String[] { "--workingCopyRoot", trunkPath.getAbsolutePath(), "--mergeSourcesRoot", "/branches/", "--manifestFile", manifestFile.getAbsolutePath() };
+		try {
+			MergeInformationAggregator.main(args);
+
+			Assert.assertEquals(expected, SVNUtils.parseMergeInfoPropertyData(clientManager.getWCClient().doGetProperty(trunkPath, SVNUtils.SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING)));
+			MergeInfoManifest manifest = MergeInfoManifest.load(manifestFile);
+			Assert.assertTrue(manifest.isFor(trunkPath));
+			Assert.assertEquals(1, manifest.getRevision());
+			Assert.assertEquals(3, manifest.getNodesWithMergeInfo().size());
+
+			clientManager.getCommitClient().doCommit(new File[] { trunkPath }, false, "Aggregated merge information", null, null, false, false, SVNDepth.INFINITY);
+			ISVNEditor commitEditor = repo.getCommitEditor("Merged folder3 from branch4", null);
+			commitEditor.openRoot(-1);
+			commitEditor.openDir("trunk", -1);
+			commitEditor.addDir("trunk/folder3", null, -1);
+			commitEditor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNPropertyValue.create("/branches/branch4/folder3:5"));
+			commitEditor.closeDir();
+			commitEditor.closeDir();
+			commitEditor.closeDir();
+			commitEditor.closeEdit();
+			updateClient.doUpdate(new File(WC_PATH), SVNRevision.HEAD, SVNDepth.INFINITY, false, false);
+
+			MergeInformationAggregator.main(args);
+
+			expected.put("/branches/branch4", RevisionRangeSet.of(5l));
+			Assert.assertEquals(expected, SVNUtils.parseMergeInfoPropertyData(clientManager.getWCClient().doGetProperty(trunkPath, SVNUtils.SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING)));
+			Assert.assertNull(clientManager.getWCClient().doGetProperty(new File(trunkPath, "folder3"), SVNUtils.SVN_MERGEINFO_PROP, SVNRevision.WORKING, SVNRevision.WORKING));
+			manifest = MergeInfoManifest.load(manifestFile);
+			Assert.assertEquals(repo.getLatestRevision(), manifest.getRevision());
+			Assert.assertEquals(Collections.singletonList("folder3"), manifest.getNodesWithMergeInfo());
+		} finally {
+			FileUtils.deleteQuietly(manifestFile);
+		}
+	}
+
+	@Test
+	public void testAggregateMergeInformationInRepository() throws SVNException {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepoStructure(repo.getCommitEditor("Adding Base Structure", null));
+		long revision = repo.getLatestRevision();
+
+		TreeMap<String, RevisionRangeSet> expected = new TreeMap<>();
+		expected.put("/branches/branch1", RevisionRangeSet.of(1l, 2l));
+		expected.put("/branches/branch2", RevisionRangeSet.of(3l));
+		expected.put("/branches/branch3", RevisionRangeSet.of(4l));
+
+		MergeInformationAggregator.main(new String[] { "--repositoryUrl", localRepoURL.appendPath("trunk", false).toString(), "--mergeSourcesRoot", "/branches/" });
+
+		Assert.assertEquals(revision + 1, repo.getLatestRevision());
+		SVNProperties trunkProps = new SVNProperties();
+		repo.getDir("trunk", -1, trunkProps, (Collection<?>) null);
+		Assert.assertEquals(expected, SVNUtils.parseMergeInfo(trunkProps.getStringValue(SVNUtils.SVN_MERGEINFO_PROP)));
+		for (String path : new String[] { "trunk/folder1", "trunk/folder1/innerfolder1", "trunk/folder2" }) {
+			SVNProperties props = new SVNProperties();
+			repo.getDir(path, -1, props, (Collection<?>) null);
+			Assert.assertNull(props.getStringValue(SVNUtils.SVN_MERGEINFO_PROP));
+		}
 	}
 
-	@SuppressWarnings("serial")
 	private SVNCommitInfo createRepoStructure(ISVNEditor commitEditor) throws SVNException {
 		commitEditor.openRoot(-1);
 		{
 			commitEditor.addDir("trunk", null, -1);
 			{
 				commitEditor.addDir("trunk/folder1", null, -1);
-				TreeMap<String, Set<Long>> trunk_folder1_mergedRevisions = new TreeMap<>();
-				trunk_folder1_mergedRevisions.put("branches/branch1", new TreeSet<Long>() {
-					{
-						add(1l);
-					}
-				});
+				TreeMap<String, RevisionRangeSet> trunk_folder1_mergedRevisions = new TreeMap<>();
+				trunk_folder1_mergedRevisions.put("branches/branch1", RevisionRangeSet.of(1l));
 				commitEditor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNUtils.createMergeInfoPropertyValue(trunk_folder1_mergedRevisions));
 				commitEditor.closeDir();
 			}
 			{
 				String folderName = "trunk/folder1/innerfolder1";
 				commitEditor.addDir(folderName, null, -1);
-				TreeMap<String, Set<Long>> trunk_folder1_innerfolder1_mergedRevisions = new TreeMap<>();
-				trunk_folder1_innerfolder1_mergedRevisions.put("branches/branch1", new TreeSet<Long>() {
-					{
-						add(2l);
-					}
-				});
+				TreeMap<String, RevisionRangeSet> trunk_folder1_innerfolder1_mergedRevisions = new TreeMap<>();
+				trunk_folder1_innerfolder1_mergedRevisions.put("branches/branch1", RevisionRangeSet.of(2l));
 				commitEditor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNUtils.createMergeInfoPropertyValue(trunk_folder1_innerfolder1_mergedRevisions));
 				commitEditor.closeDir();
 			}
 			{
 				String folderName = "trunk/folder2";
 				commitEditor.addDir(folderName, null, -1);
-				TreeMap<String, Set<Long>> trunk_folder1_innerfolder1_mergedRevisions = new TreeMap<>();
-				trunk_folder1_innerfolder1_mergedRevisions.put("branches/branch2", new TreeSet<Long>() {
-					{
-						add(3l);
-					}
-				});
+				TreeMap<String, RevisionRangeSet> trunk_folder1_innerfolder1_mergedRevisions = new TreeMap<>();
+				trunk_folder1_innerfolder1_mergedRevisions.put("branches/branch2", RevisionRangeSet.of(3l));
 				commitEditor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNUtils.createMergeInfoPropertyValue(trunk_folder1_innerfolder1_mergedRevisions));
 				commitEditor.closeDir();
 			}
-			TreeMap<String, Set<Long>> trunk_folder1_mergedRevisions = new TreeMap<>();
-			trunk_folder1_mergedRevisions.put("branches/branch3", new TreeSet<Long>() {
-				{
-					add(4l);
-				}
-			});
+			TreeMap<String, RevisionRangeSet> trunk_folder1_mergedRevisions = new TreeMap<>();
+			trunk_folder1_mergedRevisions.put("branches/branch3", RevisionRangeSet.of(4l));
 			commitEditor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNUtils.createMergeInfoPropertyValue(trunk_folder1_mergedRevisions));
 			commitEditor.closeDir();
 		}
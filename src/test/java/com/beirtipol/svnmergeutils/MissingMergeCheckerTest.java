@@ -25,10 +25,25 @@ package com.beirtipol.svnmergeutils;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -36,8 +51,11 @@ import org.junit.Test;
 import org.tmatesoft.svn.core.SVNCommitInfo;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.SVNRevisionProperty;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
 import org.tmatesoft.svn.core.io.ISVNEditor;
 import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
@@ -105,7 +123,9 @@ public class MissingMergeCheckerTest {
 		SVNURL mergeTarget = localRepoURL.appendPath("trunk", false);
 		SVNURL mergeSource = localRepoURL.appendPath("branches/branch1", false);
 
-		MissingMergeWorker worker = new MissingMergeWorker(mergeSource, mergeTarget, false, null, new QuietTimeMergeCheckerPredicate(quietTime, false));
+		// The quiet time is resolved to the last revision committed before it, as the checker does.
+		MissingMergeWorker worker = new MissingMergeWorker(mergeSource, mergeTarget, false);
+		worker.setEndRevision(repo.getDatedRevision(new Date(System.currentTimeMillis() - quietTime)));
 		List<SVNLogEntry> result = worker.getMissingMerges();
 
 		Assert.assertEquals(1, result.size());
@@ -139,7 +159,556 @@ public class MissingMergeCheckerTest {
 		Assert.assertEquals(missingMergeCommitMessage, result.get(0).getMessage());
 	}
 
-	private SVNCommitInfo addLineToFile(ISVNEditor commitEditor, String atPath, String fileContents) throws SVNException {
+	@Test
+	public void testAsyncMissingMerges() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		addLineToFile(repo.getCommitEditor("First change on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+		addLineToFile(repo.getCommitEditor("Second change on branch1", null), "branches/branch1/file1.txt", "Even More Stuff");
+
+		SVNURL mergeTarget = localRepoURL.appendPath("trunk", false);
+		SVNURL mergeSource = localRepoURL.appendPath("branches/branch1", false);
+		List<Long> expected = SyntheticRepositoryGenerator.getRevisions(new MissingMergeWorker(mergeSource, mergeTarget, false).getMissingMerges());
+		Assert.assertEquals(2, expected.size());
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			List<SVNLogEntry> result = new MissingMergeWorker(mergeSource, mergeTarget, false).getMissingMergesAsync(executor, 0).get();
+			Assert.assertEquals(expected, SyntheticRepositoryGenerator.getRevisions(result));
+
+			// Cancelled before it starts, so the check never runs.
+			CountDownLatch blocker = new CountDownLatch(1);
+			executor.execute(() -> awaitQuietly(blocker));
+			List<SVNLogEntry> cancelledEntries = new ArrayList<>();
+			CompletableFuture<Void> cancelled = new MissingMergeWorker(mergeSource, mergeTarget, false).getMissingMergesAsync(cancelledEntries::add, executor, 0);
+			Assert.assertTrue(cancelled.cancel(true));
+			blocker.countDown();
+
+			// Times out while the handler holds up the first entry, so the second is never passed on.
+			List<SVNLogEntry> timedOutEntries = new ArrayList<>();
+			CompletableFuture<Void> timedOut = new MissingMergeWorker(mergeSource, mergeTarget, false).getMissingMergesAsync(logEntry -> {
+				timedOutEntries.add(logEntry);
+				try {
+					Thread.sleep(1000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, executor, 200);
+			try {
+				timedOut.get();
+				Assert.fail("Expected the check to time out");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof TimeoutException);
+			}
+			executor.shutdown();
+			Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+			Assert.assertTrue(cancelledEntries.isEmpty());
+			try {
+				cancelled.join();
+				Assert.fail("Expected the check to be cancelled");
+			} catch (CancellationException e) {
+				// Expected
+			}
+			Assert.assertEquals(1, timedOutEntries.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testConcurrentCheckKeepsPairOrder() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch2", revision);
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch3", revision);
+		addLineToFile(repo.getCommitEditor("Changing the file on branch3", null), "branches/branch3/file1.txt", "Branch 3 Stuff");
+		addLineToFile(repo.getCommitEditor("Changing the file on branch1", null), "branches/branch1/file1.txt", "Branch 1 Stuff");
+		addLineToFile(repo.getCommitEditor("Changing the file on branch2", null), "branches/branch2/file1.txt", "Branch 2 Stuff");
+
+		File outputFile = new File(path + ".xml");
+		try {
+			MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--mergeSources", "branches/branch2;branches/branch3;branches/branch1", "--mergeTargets", "trunk;trunk;trunk", "--outputFile", outputFile.getAbsolutePath(), "--threads", "3" });
+
+			String report = FileUtils.readFileToString(outputFile);
+			int branch2 = report.indexOf("Changing the file on branch2");
+			int branch3 = report.indexOf("Changing the file on branch3");
+			int branch1 = report.indexOf("Changing the file on branch1");
+			Assert.assertTrue(branch2 >= 0);
+			Assert.assertTrue(branch2 < branch3);
+			Assert.assertTrue(branch3 < branch1);
+		} finally {
+			FileUtils.deleteQuietly(outputFile);
+		}
+	}
+
+	@Test
+	public void testHTMLReport() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		addLineToFile(repo.getCommitEditor("Changing the file on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+
+		File outputFile = new File(path + ".xml");
+		File outputHTMLFile = new File(path + ".xml.html");
+		try {
+			MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--mergeSources", "branches/branch1", "--mergeTargets", "trunk", "--outputFile", outputFile.getAbsolutePath(), "--outputAsHTML" });
+
+			Assert.assertTrue(FileUtils.readFileToString(outputFile).trim().endsWith("</log>"));
+			String html = FileUtils.readFileToString(outputHTMLFile);
+			Assert.assertTrue(html.contains("Changing the file on branch1"));
+			Assert.assertTrue(html.contains("branches/branch1"));
+		} finally {
+			FileUtils.deleteQuietly(outputFile);
+			FileUtils.deleteQuietly(outputHTMLFile);
+		}
+	}
+
+	@Test
+	public void testGzippedJSONLinesReport() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch2", revision);
+		SVNCommitInfo branch1Change = addLineToFile(repo.getCommitEditor("Changing the file on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+		addLineToFile(repo.getCommitEditor("Changing the \"file\"\non branch2", null), "branches/branch2/file1.txt", "Some More Stuff");
+
+		File outputFile = new File(path + ".jsonl.gz");
+		try {
+			MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--mergeSources", "branches/branch1;branches/branch2", "--mergeTargets", "trunk;trunk", "--outputFile", outputFile.getAbsolutePath(), "--outputFormat", "JSONL", "--gzipOutput" });
+
+			List<String> lines;
+			try (InputStream in = new GZIPInputStream(new FileInputStream(outputFile))) {
+				lines = IOUtils.readLines(in, StandardCharsets.UTF_8);
+			}
+			Assert.assertEquals(2, lines.size());
+			Assert.assertTrue(lines.get(0).startsWith("{\"mergeSource\": \"branches/branch1\", \"mergeTarget\": \"trunk\", \"revision\": " + branch1Change.getNewRevision() + ", "));
+			Assert.assertTrue(lines.get(0).contains("\"msg\": \"Changing the file on branch1\""));
+			Assert.assertTrue(lines.get(0).contains("\"paths\": [{\"path\": \"/branches/branch1/file1.txt\", \"action\": \"M\""));
+			Assert.assertTrue(lines.get(1).startsWith("{\"mergeSource\": \"branches/branch2\", \"mergeTarget\": \"trunk\", "));
+			Assert.assertTrue(lines.get(1).contains("\"msg\": \"Changing the \\\"file\\\"\\u000aon branch2\""));
+		} finally {
+			FileUtils.deleteQuietly(outputFile);
+		}
+	}
+
+	@Test
+	public void testUsersOutputFile() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch2", revision);
+		SVNCommitInfo firstChange = addLineToFile(repo.getCommitEditor("First change on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+		addLineToFile(repo.getCommitEditor("Second change on branch1", null), "branches/branch1/file1.txt", "Even More Stuff");
+		addLineToFile(repo.getCommitEditor("First change on branch2", null), "branches/branch2/file1.txt", "Some More Stuff");
+
+		File outputFile = new File(path + ".xml");
+		File usersFile = new File(path + ".users");
+		try {
+			MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--mergeSources", "branches/branch1;branches/branch2", "--mergeTargets", "trunk;trunk", "--outputFile", outputFile.getAbsolutePath(), "--usersOutputFile", usersFile.getAbsolutePath() });
+
+			String author = firstChange.getAuthor() == null ? AuthorRollupReportSink.NO_AUTHOR : firstChange.getAuthor();
+			List<String> lines = FileUtils.readLines(usersFile);
+			Assert.assertEquals(1, lines.size());
+			Assert.assertEquals(author + "\t3\t" + SVNDate.formatDate(firstChange.getDate()) + "\tbranches/branch1 -> trunk; branches/branch2 -> trunk", lines.get(0));
+		} finally {
+			FileUtils.deleteQuietly(outputFile);
+			FileUtils.deleteQuietly(usersFile);
+		}
+	}
+
+	@Test
+	public void testQuietTimeBoundsCheckedRevisions() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		long oldRevision = addLineToFile(repo.getCommitEditor("Old change on branch1", null), "branches/branch1/file1.txt", "Some More Stuff").getNewRevision();
+		// Move every revision so far two hours into the past, rather than waiting for them to leave the quiet time.
+		long twoHoursAgo = System.currentTimeMillis() - 2 * 60 * 60 * 1000L;
+		for (long r = 1; r <= oldRevision; r++) {
+			repo.setRevisionPropertyValue(r, SVNRevisionProperty.DATE, SVNPropertyValue.create(SVNDate.formatDate(new Date(twoHoursAgo + r * 1000))));
+		}
+
+		addLineToFile(repo.getCommitEditor("Recent change on branch1", null), "branches/branch1/file1.txt", "Even More Stuff");
+		copyDir(repo.getCommitEditor("Creating a recent branch", null), "trunk", "branches/branch2", revision);
+		addLineToFile(repo.getCommitEditor("Recent change on branch2", null), "branches/branch2/file1.txt", "Some More Stuff");
+
+		File outputFile = new File(path + ".xml");
+		try {
+			MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--mergeSources", "branches/branch1;branches/branch2", "--mergeTargets", "trunk;trunk", "--outputFile", outputFile.getAbsolutePath(), "--quietTime", "3600" });
+
+			String report = FileUtils.readFileToString(outputFile);
+			Assert.assertTrue(report.contains("Old change on branch1"));
+			Assert.assertFalse(report.contains("Recent change"));
+			Assert.assertEquals(1, report.split("<logentry").length - 1);
+		} finally {
+			FileUtils.deleteQuietly(outputFile);
+		}
+	}
+
+	@Test
+	public void testEndRevisionBoundsCheckedRevisions() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		long endRevision = addLineToFile(repo.getCommitEditor("Old change on branch1", null), "branches/branch1/file1.txt", "Some More Stuff").getNewRevision();
+		addLineToFile(repo.getCommitEditor("Later change on branch1", null), "branches/branch1/file1.txt", "Even More Stuff");
+		copyDir(repo.getCommitEditor("Creating a later branch", null), "trunk", "branches/branch2", revision);
+		addLineToFile(repo.getCommitEditor("Later change on branch2", null), "branches/branch2/file1.txt", "Some More Stuff");
+
+		SVNURL mergeTarget = localRepoURL.appendPath("trunk", false);
+		MissingMergeWorker worker = new MissingMergeWorker(localRepoURL.appendPath("branches/branch1", false), mergeTarget, false);
+		worker.setEndRevision(endRevision);
+		List<SVNLogEntry> result = worker.getMissingMerges();
+		Assert.assertEquals(1, result.size());
+		Assert.assertEquals(endRevision, result.get(0).getRevision());
+
+		worker = new MissingMergeWorker(localRepoURL.appendPath("branches/branch2", false), mergeTarget, false);
+		worker.setEndRevision(endRevision);
+		Assert.assertTrue(worker.getMissingMerges().isEmpty());
+	}
+
+	@Test
+	public void testChangedPathsTruncated() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		createFiles(repo.getCommitEditor("Adding three files to branch1", null), "Some File Contents", "branches/branch1/file2.txt", "branches/branch1/file3.txt", "branches/branch1/file4.txt");
+		addLineToFile(repo.getCommitEditor("Changing one file on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+
+		File outputFile = new File(path + ".xml");
+		try {
+			MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--mergeSources", "branches/branch1", "--mergeTargets", "trunk", "--outputFile", outputFile.getAbsolutePath(), "--maxChangedPaths", "2", "--minimalRevisionProperties" });
+
+			String report = FileUtils.readFileToString(outputFile);
+			Assert.assertEquals(1, report.split("changedPathsTruncated=\"true\"").length - 1);
+			Assert.assertTrue(report.contains("changedPathCount=\"3\""));
+			Assert.assertTrue(report.contains("/branches/branch1/file2.txt"));
+			Assert.assertTrue(report.contains("/branches/branch1/file3.txt"));
+			Assert.assertFalse(report.contains("/branches/branch1/file4.txt"));
+			Assert.assertTrue(report.contains("/branches/branch1/file1.txt"));
+			Assert.assertTrue(report.contains("Adding three files to branch1"));
+
+			MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--mergeSources", "branches/branch1", "--mergeTargets", "trunk", "--outputFile", outputFile.getAbsolutePath(), "--discoverChangedPaths", "false" });
+
+			report = FileUtils.readFileToString(outputFile);
+			Assert.assertEquals(2, report.split("<logentry").length - 1);
+			Assert.assertFalse(report.contains("<paths"));
+		} finally {
+			FileUtils.deleteQuietly(outputFile);
+		}
+	}
+
+	@Test
+	public void testMetricsFile() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		addLineToFile(repo.getCommitEditor("Changing the file on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+		addLineToFile(repo.getCommitEditor("NOMERGE Branch only change", null), "branches/branch1/file1.txt", "Even More Stuff");
+
+		File outputFile = new File(path + ".xml");
+		File outputHTMLFile = new File(path + ".xml.html");
+		File metricsFile = new File(path + ".json");
+		File prometheusFile = new File(path + ".json.prom");
+		try {
+			MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--mergeSources", "branches/branch1", "--mergeTargets", "trunk", "--outputFile", outputFile.getAbsolutePath(), "--outputAsHTML", "--ignoreRegex", "NOMERGE.*", "--metricsFile", metricsFile.getAbsolutePath() });
+
+			String json = FileUtils.readFileToString(metricsFile);
+			Assert.assertTrue(json.contains("\"entriesReceived\": 2"));
+			Assert.assertTrue(json.contains("\"entriesReported\": 1"));
+			Assert.assertTrue(json.contains("\"IgnoreRulesMergeCheckerPredicate\": 1"));
+			Assert.assertTrue(json.contains("\"ruleMatches\": {\"message:NOMERGE.*\": 1}"));
+			Assert.assertTrue(json.contains("\"xml\": " + outputFile.length()));
+			Assert.assertTrue(json.contains("\"html\": " + outputHTMLFile.length()));
+
+			String prometheus = FileUtils.readFileToString(prometheusFile);
+			String pairLabels = "source=\"" + localRepoURL.appendPath("branches/branch1", false) + "\",target=\"" + localRepoURL.appendPath("trunk", false) + "\"";
+			Assert.assertTrue(prometheus.contains("svnmergeutils_missing_merge_entries_filtered{" + pairLabels + ",predicate=\"IgnoreRulesMergeCheckerPredicate\"} 1\n"));
+			Assert.assertTrue(prometheus.contains("svnmergeutils_missing_merge_phase_seconds{" + pairLabels + ",phase=\"log_mergeinfo\"} "));
+			Assert.assertTrue(prometheus.contains("svnmergeutils_missing_merge_bytes_written{format=\"xml\"} " + outputFile.length() + "\n"));
+		} finally {
+			FileUtils.deleteQuietly(outputFile);
+			FileUtils.deleteQuietly(outputHTMLFile);
+			FileUtils.deleteQuietly(metricsFile);
+			FileUtils.deleteQuietly(prometheusFile);
+		}
+	}
+
+	@Test
+	public void testDiscoveredMergeSourcesSkipUnchangedPairs() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch2", revision);
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch3", revision);
+		addLineToFile(repo.getCommitEditor("First change on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+		addLineToFile(repo.getCommitEditor("First change on branch2", null), "branches/branch2/file1.txt", "Some More Stuff");
+		SVNCommitInfo branch3Change = addLineToFile(repo.getCommitEditor("First change on branch3", null), "branches/branch3/file1.txt", "Some More Stuff");
+
+		File outputFile = new File(path + ".xml");
+		File stateDir = new File(path + ".state");
+		String[] args = new String[] { "--baseUrl", localRepoURL.toString(), "--discoverMergeSources", "branches", "--mergeTargets", "trunk", "--outputFile", outputFile.getAbsolutePath(), "--stateDir", stateDir.getAbsolutePath() };
+		SVNURL mergeTarget = localRepoURL.appendPath("trunk", false);
+		File[] stateFiles = new File[3];
+		try {
+			MissingMergeChecker.main(args);
+			String report = FileUtils.readFileToString(outputFile);
+			Assert.assertTrue(report.contains("First change on branch1"));
+			Assert.assertTrue(report.contains("First change on branch2"));
+			Assert.assertTrue(report.contains("First change on branch3"));
+			for (int i = 0; i < stateFiles.length; i++) {
+				stateFiles[i] = MissingMergeState.getStateFile(stateDir, localRepoURL.appendPath("branches/branch" + (i + 1), false), mergeTarget);
+				Assert.assertTrue(stateFiles[i].setLastModified(0));
+			}
+
+			addLineToFile(repo.getCommitEditor("Second change on branch1", null), "branches/branch1/file1.txt", "Even More Stuff");
+			setMergeInfo(repo.getCommitEditor("Merged change from branch3", null), "trunk", "/branches/branch3:" + branch3Change.getNewRevision());
+			MissingMergeChecker.main(args);
+
+			report = FileUtils.readFileToString(outputFile);
+			Assert.assertTrue(report.contains("Second change on branch1"));
+			Assert.assertTrue(report.contains("First change on branch2"));
+			Assert.assertFalse(report.contains("First change on branch3"));
+			Assert.assertNotEquals(0, stateFiles[0].lastModified());
+			Assert.assertEquals(0, stateFiles[1].lastModified());
+			Assert.assertNotEquals(0, stateFiles[2].lastModified());
+		} finally {
+			FileUtils.deleteQuietly(outputFile);
+			FileUtils.deleteQuietly(stateDir);
+		}
+	}
+
+	@Test
+	public void testWatchRewritesReportWhenRepositoryChanges() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch2", revision);
+		addLineToFile(repo.getCommitEditor("First change on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+
+		File outputFile = new File(path + ".xml");
+		Thread watcher = new Thread(() -> {
+			try {
+				MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--mergeSources", "branches/branch1;branches/branch2", "--mergeTargets", "trunk;trunk", "--outputFile", outputFile.getAbsolutePath(), "--watch", "1" });
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		try {
+			watcher.start();
+			Assert.assertTrue(waitForReport(outputFile, "First change on branch1"));
+
+			addLineToFile(repo.getCommitEditor("First change on branch2", null), "branches/branch2/file1.txt", "Branch 2 Stuff");
+			Assert.assertTrue(waitForReport(outputFile, "First change on branch2"));
+			String report = FileUtils.readFileToString(outputFile);
+			Assert.assertTrue(report.indexOf("First change on branch1") < report.indexOf("First change on branch2"));
+		} finally {
+			watcher.interrupt();
+			watcher.join(10000);
+			FileUtils.deleteQuietly(outputFile);
+		}
+	}
+
+	@Test
+	public void testWatchDiscoversNewMergeSources() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		addLineToFile(repo.getCommitEditor("First change on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+
+		File outputFile = new File(path + ".xml");
+		Thread watcher = new Thread(() -> {
+			try {
+				MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--discoverMergeSources", "branches", "--mergeTargets", "trunk", "--outputFile", outputFile.getAbsolutePath(), "--watch", "1" });
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		try {
+			watcher.start();
+			Assert.assertTrue(waitForReport(outputFile, "First change on branch1"));
+
+			copyDir(repo.getCommitEditor("Creating another branch", null), "trunk", "branches/branch2", revision);
+			addLineToFile(repo.getCommitEditor("First change on branch2", null), "branches/branch2/file1.txt", "Branch 2 Stuff");
+			Assert.assertTrue(waitForReport(outputFile, "First change on branch2"));
+			Assert.assertTrue(FileUtils.readFileToString(outputFile).contains("First change on branch1"));
+		} finally {
+			watcher.interrupt();
+			watcher.join(10000);
+			FileUtils.deleteQuietly(outputFile);
+		}
+	}
+
+	@Test
+	public void testWatchRecoversFromFailedConcurrentCheck() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		StringBuilder mergeSources = new StringBuilder("branches/missing");
+		StringBuilder mergeTargets = new StringBuilder("trunk");
+		for (int i = 1; i <= 7; i++) {
+			copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch" + i, revision);
+			mergeSources.append(";branches/branch").append(i);
+			mergeTargets.append(";trunk");
+		}
+
+		// The first pair fails until its source exists, while more pairs than may run ahead of it are queued behind it.
+		File outputFile = new File(path + ".xml");
+		Thread watcher = new Thread(() -> {
+			try {
+				MissingMergeChecker.main(new String[] { "--baseUrl", localRepoURL.toString(), "--mergeSources", mergeSources.toString(), "--mergeTargets", mergeTargets.toString(), "--outputFile", outputFile.getAbsolutePath(), "--threads", "2", "--watch", "1" });
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		try {
+			watcher.start();
+			Thread.sleep(2000);
+			Assert.assertTrue(watcher.isAlive());
+
+			copyDir(repo.getCommitEditor("Creating the missing branch", null), "trunk", "branches/missing", revision);
+			addLineToFile(repo.getCommitEditor("First change on the missing branch", null), "branches/missing/file1.txt", "Some More Stuff");
+			Assert.assertTrue(waitForReport(outputFile, "First change on the missing branch"));
+		} finally {
+			watcher.interrupt();
+			watcher.join(10000);
+			FileUtils.deleteQuietly(outputFile);
+		}
+		Assert.assertFalse(watcher.isAlive());
+	}
+
+	private boolean waitForReport(File outputFile, String expected) throws IOException, InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			if (outputFile.isFile() && FileUtils.readFileToString(outputFile).contains(expected)) {
+				return true;
+			}
+			Thread.sleep(100);
+		}
+		return false;
+	}
+
+	@Test
+	public void testIncrementalMissingMerge() throws SVNException {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		SVNCommitInfo firstChange = addLineToFile(repo.getCommitEditor("First change on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+
+		SVNURL mergeTarget = localRepoURL.appendPath("trunk", false);
+		SVNURL mergeSource = localRepoURL.appendPath("branches/branch1", false);
+		MissingMergeWorker worker = new MissingMergeWorker(mergeSource, mergeTarget, false);
+
+		List<SVNLogEntry> result = new ArrayList<>();
+		MissingMergeState state = worker.getMissingMerges(result::add, null);
+		Assert.assertEquals(1, result.size());
+		Assert.assertEquals(firstChange.getNewRevision(), state.getHeadRevision());
+
+		SVNCommitInfo secondChange = addLineToFile(repo.getCommitEditor("Second change on branch1", null), "branches/branch1/file1.txt", "Even More Stuff");
+		result.clear();
+		state = worker.getMissingMerges(result::add, state);
+		Assert.assertEquals(2, result.size());
+		Assert.assertEquals(firstChange.getNewRevision(), result.get(0).getRevision());
+		Assert.assertEquals(secondChange.getNewRevision(), result.get(1).getRevision());
+
+		setMergeInfo(repo.getCommitEditor("Merged first change from branch1", null), "trunk", "/branches/branch1:" + firstChange.getNewRevision());
+		result.clear();
+		state = worker.getMissingMerges(result::add, state);
+		Assert.assertEquals(1, result.size());
+		Assert.assertEquals(secondChange.getNewRevision(), result.get(0).getRevision());
+
+		List<SVNLogEntry> fullResult = worker.getMissingMerges();
+		Assert.assertEquals(fullResult, result);
+	}
+
+	@Test
+	public void testStateNotReusedWithDifferentTrimming() throws SVNException {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		addLineToFile(repo.getCommitEditor("First change on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+
+		SVNURL mergeTarget = localRepoURL.appendPath("trunk", false);
+		SVNURL mergeSource = localRepoURL.appendPath("branches/branch1", false);
+		MissingMergeWorker worker = new MissingMergeWorker(mergeSource, mergeTarget, false);
+		worker.setDiscoverChangedPaths(false);
+
+		List<SVNLogEntry> result = new ArrayList<>();
+		MissingMergeState state = worker.getMissingMerges(result::add, null);
+		Assert.assertEquals(1, result.size());
+		Assert.assertTrue(result.get(0).getChangedPaths().isEmpty());
+
+		worker.setDiscoverChangedPaths(true);
+		Assert.assertFalse(state.isFor(mergeSource, mergeTarget, true, -1, false));
+		result.clear();
+		worker.getMissingMerges(result::add, state);
+		Assert.assertEquals(1, result.size());
+		Assert.assertTrue(result.get(0).getChangedPaths().containsKey("/branches/branch1/file1.txt"));
+	}
+
+	private SVNCommitInfo setMergeInfo(ISVNEditor commitEditor, String atPath, String mergeInfo) throws SVNException {
+		commitEditor.openRoot(-1);
+		commitEditor.openDir(atPath, -1);
+		commitEditor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNPropertyValue.create(mergeInfo));
+		commitEditor.closeDir();
+		commitEditor.closeDir();
+		return commitEditor.closeEdit();
+	}
+
+	static SVNCommitInfo addLineToFile(ISVNEditor commitEditor, String atPath, String fileContents) throws SVNException {
 		commitEditor.openRoot(-1);
 		commitEditor.openFile(atPath, -1);
 		commitEditor.applyTextDelta(atPath, null);
@@ -150,7 +719,7 @@ public class MissingMergeCheckerTest {
 		return commitEditor.closeEdit();
 	}
 
-	private SVNCommitInfo copyDir(ISVNEditor commitEditor, String sourcePath, String destPath, long revision) throws SVNException {
+	static SVNCommitInfo copyDir(ISVNEditor commitEditor, String sourcePath, String destPath, long revision) throws SVNException {
 		commitEditor.openRoot(-1);
 
 		commitEditor.addDir(destPath, sourcePath, revision);
@@ -161,7 +730,7 @@ public class MissingMergeCheckerTest {
 		return commitEditor.closeEdit();
 	}
 
-	private SVNCommitInfo createFile(ISVNEditor commitEditor, String atPath, String fileContents) throws SVNException {
+	static SVNCommitInfo createFile(ISVNEditor commitEditor, String atPath, String fileContents) throws SVNException {
 		commitEditor.openRoot(-1);
 		commitEditor.addFile(atPath, null, -1);
 		commitEditor.applyTextDelta(atPath, null);
@@ -172,7 +741,20 @@ public class MissingMergeCheckerTest {
 		return commitEditor.closeEdit();
 	}
 
-	private SVNCommitInfo createRepositoryBaseStructure(ISVNEditor commitEditor) throws SVNException {
+	private SVNCommitInfo createFiles(ISVNEditor commitEditor, String fileContents, String... atPaths) throws SVNException {
+		commitEditor.openRoot(-1);
+		SVNDeltaGenerator deltaGenerator = new SVNDeltaGenerator();
+		for (String atPath : atPaths) {
+			commitEditor.addFile(atPath, null, -1);
+			commitEditor.applyTextDelta(atPath, null);
+			String checksum = deltaGenerator.sendDelta(atPath, new ByteArrayInputStream(fileContents.getBytes()), commitEditor, true);
+			commitEditor.closeFile(atPath, checksum);
+		}
+		commitEditor.closeDir();
+		return commitEditor.closeEdit();
+	}
+
+	static SVNCommitInfo createRepositoryBaseStructure(ISVNEditor commitEditor) throws SVNException {
 		commitEditor.openRoot(-1);
 
 		commitEditor.addDir("trunk", null, -1);
@@ -0,0 +1,102 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNRevisionProperty;
+
+public class MissingMergeRecordTest {
+
+	@Test
+	public void testRecordRoundTrips() {
+		Map<String, SVNLogEntryPath> changedPaths = new HashMap<>();
+		changedPaths.put("/branches/b1/a.txt", new SVNLogEntryPath("/branches/b1/a.txt", SVNLogEntryPath.TYPE_MODIFIED, null, -1, SVNNodeKind.FILE));
+		changedPaths.put("/branches/b1/dir", new SVNLogEntryPath("/branches/b1/dir", SVNLogEntryPath.TYPE_ADDED, "/trunk/dir", 3, SVNNodeKind.DIR));
+		SVNLogEntry logEntry = new SVNLogEntry(changedPaths, 7, createRevisionProperties("alice", "Some change"), false);
+
+		SVNLogEntry restored = MissingMergeRecord.of(logEntry, new MissingMergeDictionary()).toLogEntry();
+		Assert.assertEquals(logEntry, restored);
+		Assert.assertEquals(logEntry.getRevisionProperties(), restored.getRevisionProperties());
+		Assert.assertEquals(logEntry.getChangedPaths(), restored.getChangedPaths());
+		Assert.assertEquals(SVNNodeKind.DIR, restored.getChangedPaths().get("/branches/b1/dir").getKind());
+	}
+
+	@Test
+	public void testTruncatedRecordRoundTrips() {
+		Map<String, SVNLogEntryPath> changedPaths = new HashMap<>();
+		for (int i = 0; i < 5; i++) {
+			String path = "/branches/b1/file" + i + ".txt";
+			changedPaths.put(path, new SVNLogEntryPath(path, SVNLogEntryPath.TYPE_MODIFIED, null, -1));
+		}
+		SVNLogEntry logEntry = TruncatedLogEntry.truncate(new SVNLogEntry(changedPaths, 7, createRevisionProperties("alice", "Some change"), false), 2);
+
+		SVNLogEntry restored = MissingMergeRecord.of(logEntry, new MissingMergeDictionary()).toLogEntry();
+		Assert.assertTrue(restored instanceof TruncatedLogEntry);
+		Assert.assertEquals(5, ((TruncatedLogEntry) restored).getChangedPathCount());
+		Assert.assertEquals(logEntry.getChangedPaths(), restored.getChangedPaths());
+	}
+
+	@Test
+	public void testMergeFlagsRoundTrip() {
+		SVNLogEntry logEntry = new SVNLogEntry(new HashMap<>(), 7, createRevisionProperties("alice", "Some change"), true);
+		logEntry.setSubtractiveMerge(true);
+		logEntry.setNonInheriable(true);
+
+		SVNLogEntry restored = MissingMergeRecord.of(logEntry, new MissingMergeDictionary()).toLogEntry();
+		Assert.assertTrue(restored.hasChildren());
+		Assert.assertTrue(restored.isSubtractiveMerge());
+		Assert.assertTrue(restored.isNonInheritable());
+		Assert.assertFalse(MissingMergeRecord.of(new SVNLogEntry(new HashMap<>(), 7, createRevisionProperties("alice", "Some change"), false), new MissingMergeDictionary()).toLogEntry().isSubtractiveMerge());
+	}
+
+	@Test
+	public void testAuthorsAndPathsAreInterned() {
+		MissingMergeDictionary dictionary = new MissingMergeDictionary();
+		for (int revision = 1; revision <= 100; revision++) {
+			Map<String, SVNLogEntryPath> changedPaths = new HashMap<>();
+			changedPaths.put("/branches/b1/a.txt", new SVNLogEntryPath("/branches/b1/a.txt", SVNLogEntryPath.TYPE_MODIFIED, null, -1));
+			MissingMergeRecord record = MissingMergeRecord.of(new SVNLogEntry(changedPaths, revision, createRevisionProperties(revision % 2 == 0 ? "alice" : "bob", "Change " + revision), false), dictionary);
+			Assert.assertEquals(revision % 2 == 0 ? "alice" : "bob", record.getAuthor());
+		}
+		Assert.assertEquals(2, dictionary.getAuthorCount());
+		Assert.assertEquals(1, dictionary.getPathCount());
+	}
+
+	private static SVNProperties createRevisionProperties(String author, String message) {
+		SVNProperties revisionProperties = new SVNProperties();
+		revisionProperties.put(SVNRevisionProperty.AUTHOR, author);
+		revisionProperties.put(SVNRevisionProperty.DATE, "2016-05-04T10:11:12.123456Z");
+		revisionProperties.put(SVNRevisionProperty.LOG, message);
+		revisionProperties.put("custom:prop", "value");
+		return revisionProperties;
+	}
+}
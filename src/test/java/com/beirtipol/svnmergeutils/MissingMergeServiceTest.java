@@ -0,0 +1,121 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc.SVNClientManager;
+
+public class MissingMergeServiceTest {
+	private static final String	path	= MissingMergeServiceTest.class.getClassLoader().getResource(".").getPath() + File.separator + "servicerepo";
+	private static SVNURL		localRepoURL;
+
+	@Before
+	public void setUp() throws Exception {
+		FileUtils.deleteDirectory(new File(path));
+		SVNRepositoryFactoryImpl.setup();
+		localRepoURL = SVNRepositoryFactory.createLocalRepository(new File(path), true, false);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(new File(path));
+	}
+
+	@Test
+	public void testCachesUntilSourceChanges() throws Exception {
+		SVNRepository repo = SVNClientManager.newInstance().createRepository(localRepoURL, true);
+		MissingMergeCheckerTest.createRepositoryBaseStructure(repo.getCommitEditor("Adding Base Structure", null));
+		MissingMergeCheckerTest.createFile(repo.getCommitEditor("Adding file to trunk", null), "trunk/file1.txt", "Some File Contents\nOn Multiple Lines");
+
+		long revision = repo.getLatestRevision();
+		MissingMergeCheckerTest.copyDir(repo.getCommitEditor("Creating a branch", null), "trunk", "branches/branch1", revision);
+		SVNCommitInfo firstChange = MissingMergeCheckerTest.addLineToFile(repo.getCommitEditor("Changing the file on branch1", null), "branches/branch1/file1.txt", "Some More Stuff");
+
+		MissingMergeService service = new MissingMergeService();
+		Assert.assertTrue(service.start(new String[] { "--baseUrl", localRepoURL.toString(), "--port", "0" }));
+		try {
+			String query = "http://127.0.0.1:" + service.getPort() + MissingMergeService.CONTEXT_PATH + "?source=branches/branch1&target=trunk";
+			String[] first = get(query);
+			Assert.assertEquals("200", first[0]);
+			Assert.assertEquals("MISS", first[1]);
+			Assert.assertTrue(first[2].contains("\"mergeSource\": \"/branches/branch1\", \"mergeTarget\": \"/trunk\""));
+			Assert.assertTrue(first[2].contains("\"revision\": " + firstChange.getNewRevision()));
+
+			String[] second = get(query);
+			Assert.assertEquals("HIT", second[1]);
+			Assert.assertEquals(first[2], second[2]);
+			Assert.assertEquals(1, service.getCacheHitCount());
+
+			SVNCommitInfo secondChange = MissingMergeCheckerTest.addLineToFile(repo.getCommitEditor("[maven-release-plugin] do a maven thing", null), "branches/branch1/file1.txt", "a maven thing");
+			String[] changed = get(query);
+			Assert.assertEquals("MISS", changed[1]);
+			Assert.assertTrue(changed[2].contains("\"revision\": " + secondChange.getNewRevision()));
+
+			String[] filtered = get(query + "&ignoreRule=" + URLEncoder.encode("message:\\[maven-release-plugin\\].*", "UTF-8"));
+			Assert.assertEquals("MISS", filtered[1]);
+			Assert.assertTrue(filtered[2].contains("\"revision\": " + firstChange.getNewRevision()));
+			Assert.assertFalse(filtered[2].contains("\"revision\": " + secondChange.getNewRevision()));
+			Assert.assertEquals("HIT", get(query)[1]);
+			Assert.assertEquals(3, service.getCacheMissCount());
+
+			Assert.assertEquals("400", get("http://127.0.0.1:" + service.getPort() + MissingMergeService.CONTEXT_PATH + "?source=branches/branch1")[0]);
+			Assert.assertEquals("404", get("http://127.0.0.1:" + service.getPort() + MissingMergeService.CONTEXT_PATH + "?source=branches/branch2&target=trunk")[0]);
+		} finally {
+			service.stop();
+		}
+	}
+
+	/**
+	 * 
+	 * @return the status, cache header and body of the response.
+	 */
+	private static String[] get(String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		try {
+			int status = connection.getResponseCode();
+			InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			return new String[] { Integer.toString(status), connection.getHeaderField(MissingMergeService.CACHE_HEADER), IOUtils.toString(in, StandardCharsets.UTF_8) };
+		} finally {
+			connection.disconnect();
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+
+public class OrderedLogEntryDispatcherTest {
+
+	@Test
+	public void testEntriesReachReportInPairOrder() throws Exception {
+		List<String> report = new ArrayList<>();
+		OrderedLogEntryDispatcher dispatcher = new OrderedLogEntryDispatcher(2, 2, pairIndex -> logEntry -> report.add(pairIndex + ":r" + logEntry.getRevision()));
+
+		dispatcher.handlerFor(1).handleLogEntry(new SVNLogEntry(null, 20, null, null, null));
+		dispatcher.handlerFor(0).handleLogEntry(new SVNLogEntry(null, 10, null, null, null));
+		Assert.assertEquals(1, report.size());
+		dispatcher.complete(0);
+		dispatcher.handlerFor(1).handleLogEntry(new SVNLogEntry(null, 21, null, null, null));
+		dispatcher.complete(1);
+
+		Assert.assertEquals("[0:r10, 1:r20, 1:r21]", report.toString());
+	}
+
+	@Test
+	public void testPairsWaitUntilCloseEnoughToTheHead() throws Exception {
+		OrderedLogEntryDispatcher dispatcher = new OrderedLogEntryDispatcher(3, 1, pairIndex -> logEntry -> {
+		});
+		dispatcher.awaitTurn(0);
+		dispatcher.awaitTurn(1);
+
+		Thread third = new Thread(() -> {
+			try {
+				dispatcher.awaitTurn(2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (SVNCancelException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		third.start();
+		third.join(200);
+		Assert.assertTrue(third.isAlive());
+
+		dispatcher.complete(0);
+		third.join(TimeUnit.SECONDS.toMillis(10));
+		Assert.assertFalse(third.isAlive());
+	}
+
+	@Test
+	public void testAbortCancelsWaitingAndReportingPairs() throws Exception {
+		List<String> report = new ArrayList<>();
+		OrderedLogEntryDispatcher dispatcher = new OrderedLogEntryDispatcher(3, 1, pairIndex -> logEntry -> report.add(pairIndex + ":r" + logEntry.getRevision()));
+		dispatcher.handlerFor(1).handleLogEntry(new SVNLogEntry(null, 20, null, null, null));
+
+		List<Exception> cancellations = new ArrayList<>();
+		Thread third = new Thread(() -> {
+			try {
+				dispatcher.awaitTurn(2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (SVNCancelException e) {
+				cancellations.add(e);
+			}
+		});
+		third.start();
+		third.join(200);
+		Assert.assertTrue(third.isAlive());
+
+		IllegalStateException failure = new IllegalStateException("Pair 0 failed");
+		dispatcher.abort(failure);
+		third.join(TimeUnit.SECONDS.toMillis(10));
+		Assert.assertFalse(third.isAlive());
+		Assert.assertEquals(1, cancellations.size());
+		Assert.assertSame(failure, cancellations.get(0).getCause());
+
+		try {
+			dispatcher.handlerFor(1).handleLogEntry(new SVNLogEntry(null, 21, null, null, null));
+			Assert.fail("Entries should not be accepted once the dispatcher is aborted");
+		} catch (SVNCancelException e) {
+			Assert.assertSame(failure, e.getCause());
+		}
+		dispatcher.complete(0);
+		Assert.assertTrue(report.isEmpty());
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.SortedMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RevisionRangeSetTest {
+
+	@Test
+	public void testParseMergeInfo() {
+		SortedMap<String, RevisionRangeSet> mergeInfo = SVNUtils.parseMergeInfo("/branches/rel:1-480000,480002*\n/branches/other:7, 3-5\r");
+
+		Assert.assertEquals(2, mergeInfo.size());
+		RevisionRangeSet rel = mergeInfo.get("/branches/rel");
+		Assert.assertEquals(480001, rel.size());
+		Assert.assertEquals(2, rel.rangeCount());
+		Assert.assertTrue(rel.contains(1));
+		Assert.assertTrue(rel.contains(480000));
+		Assert.assertFalse(rel.contains(480001));
+		Assert.assertTrue(rel.isNonInheritable(480002));
+		Assert.assertEquals("1-480000,480002*", rel.toString());
+		Assert.assertEquals("3-5,7", mergeInfo.get("/branches/other").toString());
+	}
+
+	@Test
+	public void testParseMergeInfoWithColonInPath() {
+		SortedMap<String, RevisionRangeSet> mergeInfo = SVNUtils.parseMergeInfo("/branches/a:b:10-12");
+
+		Assert.assertEquals(RevisionRangeSet.range(10, 12), mergeInfo.get("/branches/a:b"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseInvalidMergeInfo() {
+		SVNUtils.parseMergeInfo("/branches/rel:1-x");
+	}
+
+	@Test
+	public void testUnionCoalescesRanges() {
+		RevisionRangeSet union = RevisionRangeSet.of(1, 2, 5).union(RevisionRangeSet.of(3, 4, 9));
+
+		Assert.assertEquals("1-5,9", union.toString());
+		Assert.assertEquals(6, union.size());
+	}
+
+	@Test
+	public void testUnionPrefersInheritable() {
+		RevisionRangeSet nonInheritable = new RevisionRangeSet.Builder().add(1, 10, true).build();
+		RevisionRangeSet union = nonInheritable.union(RevisionRangeSet.range(4, 6));
+
+		Assert.assertEquals("1-3*,4-6,7-10*", union.toString());
+		Assert.assertFalse(union.isNonInheritable(5));
+		Assert.assertTrue(union.isNonInheritable(7));
+	}
+
+	@Test
+	public void testDifferenceAndIntersection() {
+		RevisionRangeSet set = RevisionRangeSet.range(1, 100);
+		RevisionRangeSet removed = RevisionRangeSet.of(1, 50, 51, 100).union(RevisionRangeSet.range(10, 20));
+
+		Assert.assertEquals("2-9,21-49,52-99", set.difference(removed).toString());
+		Assert.assertEquals("1,10-20,50-51,100", set.intersection(removed).toString());
+		Assert.assertTrue(set.difference(set).isEmpty());
+	}
+}
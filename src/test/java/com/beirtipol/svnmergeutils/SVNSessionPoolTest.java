@@ -0,0 +1,119 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc.SVNClientManager;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
+
+public class SVNSessionPoolTest {
+	private static final String	path	= SVNSessionPoolTest.class.getClassLoader().getResource(".").getPath() + File.separator + "svnpoolrepo";
+	private SVNURL				localRepoURL;
+
+	@Before
+	public void setUp() throws Exception {
+		FileUtils.deleteDirectory(new File(path));
+		FSRepositoryFactory.setup();
+		localRepoURL = SVNRepositoryFactory.createLocalRepository(new File(path), true, false);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(new File(path));
+	}
+
+	@Test
+	public void testSessionsAreSharedBetweenClients() throws Exception {
+		SVNSessionPool pool = new SVNSessionPool(SVNWCUtil.createDefaultAuthenticationManager(), null, true, 4, 60000);
+		SVNClientManager first = SVNClientManager.newInstance(null, pool);
+		SVNClientManager second = SVNClientManager.newInstance(null, pool);
+
+		SVNRepository repository = first.createRepository(localRepoURL, true);
+		Assert.assertEquals(0, repository.getLatestRevision());
+		Assert.assertSame(repository, second.createRepository(localRepoURL, true));
+		Assert.assertEquals(1, pool.getOpenedCount());
+		Assert.assertEquals(1, pool.getReusedCount());
+	}
+
+	@Test
+	public void testIdleSessionsAreHandedToOtherThreads() throws Exception {
+		SVNSessionPool pool = new SVNSessionPool(SVNWCUtil.createDefaultAuthenticationManager(), null, true, 4, 60000);
+		SVNRepository[] threadRepository = new SVNRepository[1];
+		Thread thread = new Thread(() -> {
+			try {
+				threadRepository[0] = pool.createRepository(localRepoURL, true);
+				threadRepository[0].getLatestRevision();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		thread.start();
+		thread.join();
+
+		Assert.assertSame(threadRepository[0], pool.createRepository(localRepoURL, true));
+		Assert.assertEquals(1, pool.getOpenedCount());
+		Assert.assertEquals(1, pool.getReusedCount());
+	}
+
+	@Test
+	public void testIdleSessionsAreEvicted() throws Exception {
+		SVNSessionPool pool = new SVNSessionPool(SVNWCUtil.createDefaultAuthenticationManager(), null, true, 0, 60000);
+		SVNRepository repository = pool.createRepository(localRepoURL, true);
+		pool.releaseSessions();
+		Assert.assertEquals(1, pool.getEvictedCount());
+
+		Assert.assertNotSame(repository, pool.createRepository(localRepoURL, true));
+		Assert.assertEquals(2, pool.getOpenedCount());
+		Assert.assertEquals(0, pool.getReusedCount());
+	}
+
+	@Test
+	public void testSessionsHeldBeforeAreKept() throws Exception {
+		SVNSessionPool pool = new SVNSessionPool(SVNWCUtil.createDefaultAuthenticationManager(), null, true, 0, 60000);
+		Set<String> heldBeforeCaller = pool.getHeldServers();
+		SVNRepository repository = pool.createRepository(localRepoURL, true);
+		Set<String> heldBeforeCheck = pool.getHeldServers();
+		Assert.assertEquals(1, heldBeforeCheck.size());
+
+		Assert.assertSame(repository, pool.createRepository(localRepoURL, true));
+		pool.releaseSessions(heldBeforeCheck);
+		Assert.assertEquals(0, pool.getEvictedCount());
+		Assert.assertSame(repository, pool.createRepository(localRepoURL, true));
+
+		pool.releaseSessions(heldBeforeCaller);
+		Assert.assertEquals(1, pool.getEvictedCount());
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SVNUtilsTest {
+
+	@Test
+	public void testCreateNormalizedMergeInfo() {
+		SortedMap<String, RevisionRangeSet> mergeInfo = new TreeMap<>();
+		RevisionRangeSet.Builder builder = new RevisionRangeSet.Builder();
+		for (long revision = 1; revision <= 50000; revision++) {
+			builder.add(revision, revision, false);
+		}
+		mergeInfo.put("branches/rel/", builder.build());
+		mergeInfo.put("/branches//rel", SVNUtils.parseMergeInfo("/x:50001-50003,50005*").get("/x"));
+		mergeInfo.put("/branches/empty", RevisionRangeSet.EMPTY);
+
+		Assert.assertEquals("/branches/rel:1-50003,50005*", SVNUtils.createMergeInfoPropertyValue(mergeInfo).getString());
+	}
+
+	@Test
+	public void testMergeInfoImpliedByInheritance() {
+		SortedMap<String, RevisionRangeSet> inherited = SVNUtils.parseMergeInfo("/branches/rel/module:1-10,12*");
+
+		Assert.assertTrue(SVNUtils.isImpliedByInheritance(SVNUtils.parseMergeInfo("/branches/rel/module:1-5,6-10"), inherited));
+		Assert.assertFalse(SVNUtils.isImpliedByInheritance(SVNUtils.parseMergeInfo("/branches/rel/module:1-10,12*"), inherited));
+		Assert.assertFalse(SVNUtils.isImpliedByInheritance(SVNUtils.parseMergeInfo("/branches/rel/module:1-11"), inherited));
+		Assert.assertTrue(SVNUtils.isImpliedByInheritance(new TreeMap<>(), new TreeMap<>()));
+	}
+}
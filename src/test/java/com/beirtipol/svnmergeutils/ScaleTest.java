@@ -0,0 +1,145 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.SortedMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.tmatesoft.svn.core.SVNMergeInfoInheritance;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+
+/**
+ * Runs the checker and the aggregator against generated repositories, recording the wall time and peak heap of each
+ * run in target/scale-test-results.csv.
+ * 
+ * The defaults keep the build quick. Production sized runs can be made with e.g.
+ * 'mvn test -Dtest=ScaleTest -Dscale.revisions=100000 -Dscale.branches=50'.
+ */
+public class ScaleTest {
+	private static final String	path		= ScaleTest.class.getClassLoader().getResource(".").getPath() + File.separator + "scalerepo";
+	private static final File	resultsFile	= new File(ScaleTest.class.getClassLoader().getResource(".").getPath(), "../scale-test-results.csv");
+
+	private final int			branches	= Integer.getInteger("scale.branches", 3);
+	private final int			revisions	= Integer.getInteger("scale.revisions", 60);
+	private final int			modules		= Integer.getInteger("scale.modules", 3);
+	private final double		merged		= Double.parseDouble(System.getProperty("scale.mergedFraction", "0.5"));
+	private final double		subtree		= Double.parseDouble(System.getProperty("scale.subtreeMergedFraction", "0.2"));
+
+	@Before
+	public void setUp() throws IOException {
+		FileUtils.deleteDirectory(new File(path));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(new File(path));
+	}
+
+	@Test
+	public void testMissingMergeCheckerAtScale() throws Exception {
+		SyntheticRepositoryGenerator generator = new SyntheticRepositoryGenerator().branches(branches).revisions(revisions).modules(modules).mergedFraction(merged);
+		SVNURL repositoryURL = generator.generate(new File(path));
+
+		StringBuilder mergeSources = new StringBuilder();
+		StringBuilder mergeTargets = new StringBuilder();
+		for (int branch = 0; branch < branches; branch++) {
+			mergeSources.append(branch > 0 ? ";" : "").append(SyntheticRepositoryGenerator.getBranchPath(branch));
+			mergeTargets.append(branch > 0 ? ";" : "").append(SyntheticRepositoryGenerator.TRUNK);
+		}
+		File outputFile = new File(path + ".xml");
+		try {
+			long start = startMeasuring();
+			MissingMergeChecker.main(new String[] { "--baseUrl", repositoryURL.toString(), "--mergeSources", mergeSources.toString(), "--mergeTargets", mergeTargets.toString(), "--outputFile", outputFile.getAbsolutePath() });
+			record("MissingMergeChecker", start);
+
+			String report = FileUtils.readFileToString(outputFile);
+			Assert.assertEquals(generator.getUnmergedRevisionCount(), report.split("<logentry").length - 1);
+		} finally {
+			FileUtils.deleteQuietly(outputFile);
+		}
+	}
+
+	@Test
+	public void testRepositoryMergeInformationAggregatorAtScale() throws Exception {
+		SyntheticRepositoryGenerator generator = new SyntheticRepositoryGenerator().branches(branches).revisions(revisions).modules(modules).mergedFraction(merged).subtreeMergedFraction(subtree);
+		SVNURL repositoryURL = generator.generate(new File(path));
+
+		long start = startMeasuring();
+		MergeInformationAggregator.main(new String[] { "--repositoryUrl", repositoryURL.appendPath(SyntheticRepositoryGenerator.TRUNK, false).toString(), "--mergeSourcesRoot", "/" + SyntheticRepositoryGenerator.BRANCHES + "/" });
+		record("MergeInformationAggregator", start);
+
+		SVNRepository repository = SVNRepositoryFactory.create(repositoryURL);
+		try {
+			SortedMap<String, SortedMap<String, RevisionRangeSet>> catalog = SVNUtils.getMergeInfoCatalog(repository, "/" + SyntheticRepositoryGenerator.TRUNK, repository.getLatestRevision(), SVNMergeInfoInheritance.EXPLICIT);
+			Assert.assertEquals(1, catalog.size());
+			SortedMap<String, RevisionRangeSet> trunkMergeInfo = catalog.get("/" + SyntheticRepositoryGenerator.TRUNK);
+			for (int branch = 0; branch < branches; branch++) {
+				RevisionRangeSet expected = generator.getMergedRevisions(branch).union(generator.getSubtreeMergedRevisions(branch));
+				Assert.assertEquals(expected, trunkMergeInfo.getOrDefault("/" + SyntheticRepositoryGenerator.getBranchPath(branch), RevisionRangeSet.EMPTY));
+			}
+		} finally {
+			repository.closeSession();
+		}
+	}
+
+	private long startMeasuring() {
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+		return System.nanoTime();
+	}
+
+	private void record(String tool, long start) throws IOException {
+		long wallMillis = (System.nanoTime() - start) / 1000000;
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		boolean newFile = !resultsFile.isFile();
+		try (PrintWriter out = new PrintWriter(new FileWriter(resultsFile, true))) {
+			if (newFile) {
+				out.println("tool,branches,revisions,modules,mergedFraction,subtreeMergedFraction,wallMillis,peakHeapBytes");
+			}
+			out.println(String.join(",", tool, Integer.toString(branches), Integer.toString(revisions), Integer.toString(modules), Double.toString(merged), Double.toString(subtree), Long.toString(wallMillis), Long.toString(peakHeap)));
+		}
+	}
+}
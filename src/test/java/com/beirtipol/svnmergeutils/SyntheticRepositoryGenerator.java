@@ -0,0 +1,327 @@
+/**
+ * MIT License
+ * 
+ * Copyright (c) 2016 Beirt 'Nunin
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.beirtipol.svnmergeutils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+
+/**
+ * Builds local FSFS repositories of a given shape, so that the tools can be run against something the size of a
+ * production repository without needing one.
+ * 
+ * The repository has a trunk made up of a number of modules, and a number of branches copied from it. Each revision
+ * changes a file in one module of one branch, in turn. A fraction of each branch's revisions is then recorded as merged
+ * to trunk, and a further fraction may be recorded as merged to just the module it changed, as happens when people
+ * merge part of a project.
+ * 
+ * @author beirtipol@gmail.com
+ *
+ */
+public class SyntheticRepositoryGenerator {
+	public static final String				TRUNK					= "trunk";
+	public static final String				BRANCHES				= "branches";
+
+	private int								branches				= 2;
+	private int								revisions				= 20;
+	private int								modules					= 2;
+	private double							mergedFraction			= 0.5;
+	private double							subtreeMergedFraction	= 0;
+	private long							seed					= 1;
+
+	private final List<RevisionRangeSet>	branchRevisions			= new ArrayList<>();
+	private final List<RevisionRangeSet>	mergedRevisions			= new ArrayList<>();
+	private final List<RevisionRangeSet>	subtreeMergedRevisions	= new ArrayList<>();
+
+	/**
+	 * Number of branches to create.
+	 */
+	public SyntheticRepositoryGenerator branches(int branches) {
+		this.branches = branches;
+		return this;
+	}
+
+	/**
+	 * Total number of revisions to commit across all of the branches.
+	 */
+	public SyntheticRepositoryGenerator revisions(int revisions) {
+		this.revisions = revisions;
+		return this;
+	}
+
+	/**
+	 * Number of top level directories in trunk, and so in each branch.
+	 */
+	public SyntheticRepositoryGenerator modules(int modules) {
+		this.modules = modules;
+		return this;
+	}
+
+	/**
+	 * Fraction of each branch's revisions recorded as merged to the whole of trunk.
+	 */
+	public SyntheticRepositoryGenerator mergedFraction(double mergedFraction) {
+		this.mergedFraction = mergedFraction;
+		return this;
+	}
+
+	/**
+	 * Fraction of each branch's remaining revisions recorded as merged to only the trunk module they changed.
+	 */
+	public SyntheticRepositoryGenerator subtreeMergedFraction(double subtreeMergedFraction) {
+		this.subtreeMergedFraction = subtreeMergedFraction;
+		return this;
+	}
+
+	/**
+	 * Seed for choosing which revisions are merged, so that the same settings always give the same repository.
+	 */
+	public SyntheticRepositoryGenerator seed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	public static String getBranchPath(int branch) {
+		return BRANCHES + "/branch" + branch;
+	}
+
+	public static String getModulePath(String root, int module) {
+		return root + "/module" + module;
+	}
+
+	/**
+	 * 
+	 * @return the revision numbers of the given log entries, in order.
+	 */
+	public static List<Long> getRevisions(Collection<SVNLogEntry> logEntries) {
+		List<Long> revisions = new ArrayList<>(logEntries.size());
+		for (SVNLogEntry logEntry : logEntries) {
+			revisions.add(logEntry.getRevision());
+		}
+		return revisions;
+	}
+
+	/**
+	 * 
+	 * @return every revision committed to the given branch after it was created.
+	 */
+	public RevisionRangeSet getBranchRevisions(int branch) {
+		return branchRevisions.get(branch);
+	}
+
+	/**
+	 * 
+	 * @return the revisions of the given branch recorded as merged to the whole of trunk.
+	 */
+	public RevisionRangeSet getMergedRevisions(int branch) {
+		return mergedRevisions.get(branch);
+	}
+
+	/**
+	 * 
+	 * @return the revisions of the given branch recorded as merged to only one of the trunk modules.
+	 */
+	public RevisionRangeSet getSubtreeMergedRevisions(int branch) {
+		return subtreeMergedRevisions.get(branch);
+	}
+
+	/**
+	 * 
+	 * @return the number of revisions, across all branches, which have not been recorded as merged anywhere in trunk.
+	 */
+	public long getUnmergedRevisionCount() {
+		long count = 0;
+		for (int branch = 0; branch < branches; branch++) {
+			count += branchRevisions.get(branch).difference(mergedRevisions.get(branch)).difference(subtreeMergedRevisions.get(branch)).size();
+		}
+		return count;
+	}
+
+	/**
+	 * Create the repository in the given directory, which must not already hold one.
+	 * 
+	 * @return the url of the root of the repository.
+	 */
+	public SVNURL generate(File repositoryDir) throws SVNException {
+		FSRepositoryFactory.setup();
+		SVNURL repositoryURL = SVNRepositoryFactory.createLocalRepository(repositoryDir, true, false);
+		SVNRepository repository = SVNRepositoryFactory.create(repositoryURL);
+		try {
+			createTrunk(repository);
+			createBranches(repository);
+			commitChanges(repository);
+			recordMerges(repository);
+		} finally {
+			repository.closeSession();
+		}
+		return repositoryURL;
+	}
+
+	private void createTrunk(SVNRepository repository) throws SVNException {
+		ISVNEditor editor = repository.getCommitEditor("Adding base structure", null);
+		editor.openRoot(-1);
+		editor.addDir(TRUNK, null, -1);
+		for (int module = 0; module < modules; module++) {
+			String modulePath = getModulePath(TRUNK, module);
+			editor.addDir(modulePath, null, -1);
+			String filePath = modulePath + "/file.txt";
+			editor.addFile(filePath, null, -1);
+			sendContents(editor, filePath, "0");
+			editor.closeDir();
+		}
+		editor.closeDir();
+		editor.addDir(BRANCHES, null, -1);
+		editor.closeDir();
+		editor.closeDir();
+		editor.closeEdit();
+	}
+
+	private void createBranches(SVNRepository repository) throws SVNException {
+		long trunkRevision = repository.getLatestRevision();
+		ISVNEditor editor = repository.getCommitEditor("Creating branches", null);
+		editor.openRoot(-1);
+		editor.openDir(BRANCHES, -1);
+		for (int branch = 0; branch < branches; branch++) {
+			editor.addDir(getBranchPath(branch), "/" + TRUNK, trunkRevision);
+			editor.closeDir();
+		}
+		editor.closeDir();
+		editor.closeDir();
+		editor.closeEdit();
+	}
+
+	private void commitChanges(SVNRepository repository) throws SVNException {
+		List<RevisionRangeSet.Builder> branchBuilders = new ArrayList<>();
+		for (int branch = 0; branch < branches; branch++) {
+			branchBuilders.add(new RevisionRangeSet.Builder());
+		}
+		for (int i = 0; i < revisions; i++) {
+			int branch = i % branches;
+			int module = (i / branches) % modules;
+			String branchPath = getBranchPath(branch);
+			String modulePath = getModulePath(branchPath, module);
+			String filePath = modulePath + "/file.txt";
+
+			ISVNEditor editor = repository.getCommitEditor("Change " + i + " to " + modulePath, null);
+			editor.openRoot(-1);
+			editor.openDir(BRANCHES, -1);
+			editor.openDir(branchPath, -1);
+			editor.openDir(modulePath, -1);
+			editor.openFile(filePath, -1);
+			sendContents(editor, filePath, Integer.toString(i));
+			editor.closeDir();
+			editor.closeDir();
+			editor.closeDir();
+			editor.closeDir();
+			long revision = editor.closeEdit().getNewRevision();
+			branchBuilders.get(branch).add(revision, revision, false);
+		}
+		branchRevisions.clear();
+		for (RevisionRangeSet.Builder builder : branchBuilders) {
+			branchRevisions.add(builder.build());
+		}
+	}
+
+	private void recordMerges(SVNRepository repository) throws SVNException {
+		Random random = new Random(seed);
+		TreeMap<String, RevisionRangeSet> trunkMergeInfo = new TreeMap<>();
+		List<TreeMap<String, RevisionRangeSet>> moduleMergeInfo = new ArrayList<>();
+		for (int module = 0; module < modules; module++) {
+			moduleMergeInfo.add(new TreeMap<>());
+		}
+		mergedRevisions.clear();
+		subtreeMergedRevisions.clear();
+
+		for (int branch = 0; branch < branches; branch++) {
+			RevisionRangeSet.Builder merged = new RevisionRangeSet.Builder();
+			List<RevisionRangeSet.Builder> moduleMerged = new ArrayList<>();
+			for (int module = 0; module < modules; module++) {
+				moduleMerged.add(new RevisionRangeSet.Builder());
+			}
+			// Each branch's revisions change its modules in turn.
+			long[] revisionIndex = { 0 };
+			branchRevisions.get(branch).forEach(revision -> {
+				int module = (int) (revisionIndex[0]++ % modules);
+				if (random.nextDouble() < mergedFraction) {
+					merged.add(revision, revision, false);
+				} else if (random.nextDouble() < subtreeMergedFraction) {
+					moduleMerged.get(module).add(revision, revision, false);
+				}
+			});
+			RevisionRangeSet branchMerged = merged.build();
+			RevisionRangeSet.Builder subtreeMerged = new RevisionRangeSet.Builder();
+			String sourcePath = "/" + getBranchPath(branch);
+			if (!branchMerged.isEmpty()) {
+				trunkMergeInfo.put(sourcePath, branchMerged);
+			}
+			for (int module = 0; module < modules; module++) {
+				RevisionRangeSet moduleOnly = moduleMerged.get(module).build();
+				subtreeMerged.add(moduleOnly);
+				// A module with mergeinfo of its own no longer inherits trunk's, so it records both.
+				RevisionRangeSet moduleMergedRevisions = branchMerged.union(moduleOnly);
+				if (!moduleMergedRevisions.isEmpty()) {
+					moduleMergeInfo.get(module).put(getModulePath(sourcePath, module), moduleMergedRevisions);
+				}
+			}
+			mergedRevisions.add(branchMerged);
+			subtreeMergedRevisions.add(subtreeMerged.build());
+		}
+
+		ISVNEditor editor = repository.getCommitEditor("Recording merges to trunk", null);
+		editor.openRoot(-1);
+		editor.openDir(TRUNK, -1);
+		if (!trunkMergeInfo.isEmpty()) {
+			editor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNUtils.createMergeInfoPropertyValue(trunkMergeInfo));
+		}
+		for (int module = 0; module < modules; module++) {
+			if (subtreeMergedFraction > 0 && !moduleMergeInfo.get(module).isEmpty()) {
+				editor.openDir(getModulePath(TRUNK, module), -1);
+				editor.changeDirProperty(SVNUtils.SVN_MERGEINFO_PROP, SVNUtils.createMergeInfoPropertyValue(moduleMergeInfo.get(module)));
+				editor.closeDir();
+			}
+		}
+		editor.closeDir();
+		editor.closeDir();
+		editor.closeEdit();
+	}
+
+	private static void sendContents(ISVNEditor editor, String path, String contents) throws SVNException {
+		editor.applyTextDelta(path, null);
+		String checksum = new SVNDeltaGenerator().sendDelta(path, new ByteArrayInputStream(contents.getBytes()), editor, true);
+		editor.closeFile(path, checksum);
+	}
+}